@@ -0,0 +1,31 @@
+/*
+ * Copyright (C) 2013 gujicheng
+ * 
+ * Licensed under the GPL License Version 2.0;
+ * you may not use this file except in compliance with the License.
+ * 
+ * If you have any question, please contact me.
+ * 
+ *************************************************************************
+ **                   Author information                                **
+ *************************************************************************
+ ** Email: gujicheng197@126.com                                         **
+ ** QQ   : 29600731                                                     **
+ ** Weibo: http://weibo.com/gujicheng197                                **
+ *************************************************************************
+ */
+package com.libra.sinvoice.bench;
+
+/**
+ * 依次运行所有基准测试
+ */
+public class AllBenchmarks {
+    public static void main(String[] args) {
+        OscillatorBenchmark.main(args);
+        GeneratorBenchmark.main(args);
+        BufferBenchmark.main(args);
+        RecognitionBenchmark.main(args);
+        BitDepthBenchmark.main(args);
+        CaptureBenchmark.main(args);
+    }
+}
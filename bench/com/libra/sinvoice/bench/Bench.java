@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2013 gujicheng
+ * 
+ * Licensed under the GPL License Version 2.0;
+ * you may not use this file except in compliance with the License.
+ * 
+ * If you have any question, please contact me.
+ * 
+ *************************************************************************
+ **                   Author information                                **
+ *************************************************************************
+ ** Email: gujicheng197@126.com                                         **
+ ** QQ   : 29600731                                                     **
+ ** Weibo: http://weibo.com/gujicheng197                                **
+ *************************************************************************
+ */
+package com.libra.sinvoice.bench;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 简单的基准测试框架，在普通JVM上运行<br>
+ * 先预热到吞吐量稳定，再计时至少若干轮、至少1秒，输出每秒处理的样本数和每个样本分配的字节数。
+ * 分配量包括当前线程和{@link #addThread(Thread)}登记的线程。
+ */
+public abstract class Bench {
+    private final static int DEFAULT_WARMUP = 5;
+    private final static int DEFAULT_ITERATIONS = 10;
+    // 预热至少这么久，且相邻两批的吞吐量相差不超过STABLE_RATIO；最多预热MAX_WARMUP_NANOS
+    private final static long MIN_WARMUP_NANOS = 1000L * 1000 * 1000;
+    private final static long MAX_WARMUP_NANOS = 10L * 1000 * 1000 * 1000;
+    private final static long BATCH_NANOS = 100L * 1000 * 1000;
+    private final static double STABLE_RATIO = 0.05;
+    // 计时阶段至少这么久，单轮很短时计时误差不影响结果
+    private final static long MIN_MEASURE_NANOS = 1000L * 1000 * 1000;
+
+    private final List<Thread> mThreads = new ArrayList<Thread>();
+
+    /**
+     * 运行一轮
+     * @return 本轮处理的样本数
+     */
+    public abstract long run();
+
+    public void setUp() {
+    }
+
+    public void tearDown() {
+    }
+
+    /**
+     * 登记在setUp中启动、参与每轮工作的线程，统计分配量时一并计入
+     */
+    protected void addThread(Thread thread) {
+        mThreads.add(thread);
+    }
+
+    /**
+     * @return 每秒处理的样本数
+     */
+    public static double measure(String name, Bench bench) {
+        return measure(name, bench, DEFAULT_WARMUP, DEFAULT_ITERATIONS);
+    }
+
+    /**
+     * @param warmup 最少预热的轮数
+     * @param iterations 最少计时的轮数
+     */
+    public static double measure(String name, Bench bench, int warmup, int iterations) {
+        bench.setUp();
+        try {
+            warmUp(bench, warmup);
+
+            long samples = 0;
+            long startBytes = bench.allocatedBytes();
+            long start = System.nanoTime();
+            long elapsed;
+            int runs = 0;
+            do {
+                samples += bench.run();
+                ++runs;
+                elapsed = System.nanoTime() - start;
+            } while (runs < iterations || elapsed < MIN_MEASURE_NANOS);
+            long bytes = bench.allocatedBytes() - startBytes;
+
+            double perSecond = samples * 1e9 / elapsed;
+            String alloc = (startBytes < 0) ? "n/a" : String.format("%.3f", bytes / (double) samples);
+            System.out.println(String.format("%-48s %14.0f samples/s  %10s B/sample", name, perSecond, alloc));
+            return perSecond;
+        } finally {
+            bench.tearDown();
+        }
+    }
+
+    /**
+     * 按批运行，每批至少BATCH_NANOS，直到预热够久且吞吐量稳定，JIT编译、缓存填充等一次性开销不计入结果
+     */
+    private static void warmUp(Bench bench, int minRuns) {
+        long begin = System.nanoTime();
+        int runs = 0;
+        double last = 0;
+        while (true) {
+            long samples = 0;
+            long start = System.nanoTime();
+            long elapsed;
+            do {
+                samples += bench.run();
+                ++runs;
+                elapsed = System.nanoTime() - start;
+            } while (elapsed < BATCH_NANOS);
+            double rate = samples / (double) elapsed;
+
+            long total = System.nanoTime() - begin;
+            if (total >= MAX_WARMUP_NANOS) {
+                break;
+            }
+            if (runs >= minRuns && total >= MIN_WARMUP_NANOS && Math.abs(rate - last) <= STABLE_RATIO * last) {
+                break;
+            }
+            last = rate;
+        }
+    }
+
+    // 当前线程和登记的线程分配的字节数之和，不支持时返回-1
+    private long allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            return -1;
+        }
+        com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+        long bytes = sunBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+        for (Thread thread : mThreads) {
+            bytes += Math.max(0, sunBean.getThreadAllocatedBytes(thread.getId()));
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright (C) 2013 gujicheng
+ * 
+ * Licensed under the GPL License Version 2.0;
+ * you may not use this file except in compliance with the License.
+ * 
+ * If you have any question, please contact me.
+ * 
+ *************************************************************************
+ **                   Author information                                **
+ *************************************************************************
+ ** Email: gujicheng197@126.com                                         **
+ ** QQ   : 29600731                                                     **
+ ** Weibo: http://weibo.com/gujicheng197                                **
+ *************************************************************************
+ */
+package com.libra.sinvoice.bench;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import com.libra.sinvoice.Buffer.BufferData;
+import com.libra.sinvoice.Common;
+import com.libra.sinvoice.Encoder;
+import com.libra.sinvoice.Record;
+import com.libra.sinvoice.SinGenerator;
+import com.libra.sinvoice.SinVoiceRenderer;
+import com.libra.sinvoice.VoiceRecognition;
+
+/**
+ * 16位与8位PCM的对比：每条消息的数据量、识别吞吐量，以及不同音量和噪声下各解码器的消息错误率<br>
+ * 按位深生成消息，归一化后乘以音量、加噪声，再按同样的位深量化，模拟发送、传播和录音；
+ * 8位数据经过VoiceRecognition转为16位采样点后解码，与录音时的路径相同。
+ */
+public class BitDepthBenchmark {
+    private final static String CODE_BOOK = "abcde";
+    private final static String TEXT = "abcdeabcdeabcde";
+    private final static int MESSAGES = 20;
+    private final static int MUTE_INTERVAL = 200;
+    // 接收到的音量，相对于发送的满幅；再低时低于解码器的能量门限，与位深无关
+    private final static double[] GAINS = { 1, 0.1, 0.03 };
+    // 噪声标准差，相对于接收到的音量
+    private final static double[] NOISES = { 0, 0.05, 0.2 };
+
+    /**
+     * 把预先生成的数据依次交给VoiceRecognition，在调用线程中同步识别
+     */
+    static class RecognitionBench extends Bench implements VoiceRecognition.Callback, VoiceRecognition.Listener {
+        private final VoiceRecognition mRecognition;
+        private final List<BufferData> mSignal;
+        private final List<Integer> mSymbols = new ArrayList<Integer>();
+        private final long mSamples;
+        private Iterator<BufferData> mNext;
+
+        public RecognitionBench(int bits, int decoder, List<BufferData> signal) {
+            mRecognition = new VoiceRecognition(this, Common.DEFAULT_SAMPLE_RATE, Record.CHANNEL_1, bits, decoder);
+            mRecognition.setListener(this);
+            mSignal = signal;
+            long samples = 0;
+            for (BufferData data : signal) {
+                samples += data.getFilledSize() / bits;
+            }
+            mSamples = samples;
+        }
+
+        @Override
+        public long run() {
+            mSymbols.clear();
+            mNext = mSignal.iterator();
+            mRecognition.start();
+            return mSamples;
+        }
+
+        @Override
+        public BufferData getRecognitionBuffer() {
+            return mNext.hasNext() ? mNext.next() : BufferData.getEmptyBuffer();
+        }
+
+        @Override
+        public void freeRecognitionBuffer(BufferData buffer) {
+        }
+
+        @Override
+        public void onStartRecognition() {
+        }
+
+        @Override
+        public void onRecognition(int index) {
+            mSymbols.add(index);
+        }
+
+        @Override
+        public void onStopRecognition() {
+        }
+
+        /**
+         * @param expected 一条消息的编码结果，包括开始、结束音
+         * @return 识别结果与expected完全相同的消息个数
+         */
+        public int countCorrect(List<Integer> expected) {
+            int correct = 0;
+            int start = -1;
+            for (int i = 0; i < mSymbols.size(); ++i) {
+                int index = mSymbols.get(i);
+                if (Common.START_TOKEN == index) {
+                    start = i;
+                } else if (Common.STOP_TOKEN == index && start >= 0) {
+                    if (mSymbols.subList(start, i + 1).equals(expected)) {
+                        ++correct;
+                    }
+                    start = -1;
+                }
+            }
+            return correct;
+        }
+    }
+
+    /**
+     * @param bits Record.BITS_8或Record.BITS_16
+     */
+    static byte[] renderMessage(int bits) {
+        int genBits = (Record.BITS_8 == bits) ? SinGenerator.BITS_8 : SinGenerator.BITS_16;
+        SinVoiceRenderer renderer = new SinVoiceRenderer(CODE_BOOK, Common.DEFAULT_SAMPLE_RATE, genBits, Common.DEFAULT_BUFFER_SIZE);
+        return renderer.renderToWav(TEXT, MUTE_INTERVAL);
+    }
+
+    static List<BufferData> render(int bits, double gain, double noise) {
+        byte pcm[] = renderMessage(bits);
+        List<BufferData> signal = new ArrayList<BufferData>();
+        Random random = new Random(1);
+        for (int m = 0; m < MESSAGES; ++m) {
+            // 跳过44字节的WAV头
+            for (int offset = 44; offset < pcm.length; offset += Common.DEFAULT_BUFFER_SIZE) {
+                int size = Math.min(Common.DEFAULT_BUFFER_SIZE, pcm.length - offset);
+                BufferData data;
+                if (Record.BITS_8 == bits) {
+                    data = new BufferData(Common.DEFAULT_BUFFER_SIZE);
+                    for (int i = 0; i < size; ++i) {
+                        double x = ((pcm[offset + i] & 0xff) - 128) / 128.0;
+                        long v = Math.round(channel(x, gain, noise, random) * 128) + 128;
+                        data.mData[i] = (byte) Math.max(0, Math.min(255, v));
+                    }
+                } else {
+                    data = new BufferData(Common.DEFAULT_BUFFER_SIZE, BufferData.STORAGE_SAMPLES);
+                    ByteBuffer.wrap(pcm, offset, size).order(ByteOrder.LITTLE_ENDIAN).asShortBuffer().get(data.mSamples, 0, size / 2);
+                    for (int i = 0; i < size / 2; ++i) {
+                        double x = data.mSamples[i] / 32768.0;
+                        long v = Math.round(channel(x, gain, noise, random) * 32768);
+                        data.mSamples[i] = (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, v));
+                    }
+                }
+                data.setFilledSize(size);
+                signal.add(data);
+            }
+        }
+        return signal;
+    }
+
+    private static double channel(double x, double gain, double noise, Random random) {
+        return (x + random.nextGaussian() * noise) * gain;
+    }
+
+    public static void main(String[] args) {
+        List<Integer> expected = new ArrayList<Integer>();
+        Encoder.convertTextToCodes(CODE_BOOK, TEXT, expected);
+
+        int[] bitsList = { Record.BITS_16, Record.BITS_8 };
+        int[] decoders = { VoiceRecognition.DECODER_ZERO_CROSSING, VoiceRecognition.DECODER_GOERTZEL, VoiceRecognition.DECODER_FFT };
+        String[] names = { "zero-crossing", "goertzel", "fft" };
+        for (int bits : bitsList) {
+            System.out.println((8 * bits) + " bit: " + (renderMessage(bits).length - 44) + " bytes per message");
+            for (int i = 0; i < decoders.length; ++i) {
+                Bench.measure("bitdepth " + (8 * bits) + " bit " + names[i], new RecognitionBench(bits, decoders[i], render(bits, 1, 0)));
+                for (double gain : GAINS) {
+                    for (double noise : NOISES) {
+                        RecognitionBench bench = new RecognitionBench(bits, decoders[i], render(bits, gain, noise));
+                        bench.run();
+                        int errors = MESSAGES - bench.countCorrect(expected);
+                        System.out.println(String.format("    gain %.2f noise %.2f: message error rate %.2f (%d/%d)", gain, noise,
+                                (double) errors / MESSAGES, errors, MESSAGES));
+                    }
+                }
+            }
+        }
+    }
+}
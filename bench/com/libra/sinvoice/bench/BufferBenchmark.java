@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2013 gujicheng
+ * 
+ * Licensed under the GPL License Version 2.0;
+ * you may not use this file except in compliance with the License.
+ * 
+ * If you have any question, please contact me.
+ * 
+ *************************************************************************
+ **                   Author information                                **
+ *************************************************************************
+ ** Email: gujicheng197@126.com                                         **
+ ** QQ   : 29600731                                                     **
+ ** Weibo: http://weibo.com/gujicheng197                                **
+ *************************************************************************
+ */
+package com.libra.sinvoice.bench;
+
+import java.util.concurrent.Semaphore;
+
+import com.libra.sinvoice.Buffer;
+import com.libra.sinvoice.Buffer.BufferData;
+import com.libra.sinvoice.Common;
+import com.libra.sinvoice.SpscRing;
+
+/**
+ * 比较LinkedBlockingQueue和SpscRing实现的Buffer在两个线程间传递缓冲区的吞吐量<br>
+ * 生产线程getEmpty/putFull，消费线程getFull/putEmpty，与编码、播放线程的用法相同<br>
+ * 另外用单个缓冲区来回传递测量往返延迟
+ */
+public class BufferBenchmark {
+    private final static int HANDOFFS = 50000;
+    private final static int SAMPLES_PER_BUFFER = Common.DEFAULT_BUFFER_SIZE / 2;
+
+    /**
+     * 消费线程在setUp中启动一次，每轮以结束标志结束，处理完后通知生产线程
+     */
+    private static class HandoffBench extends Bench {
+        private final Buffer mBuffer;
+        private final Semaphore mRunDone = new Semaphore(0);
+        private volatile boolean mStopped;
+        private Thread mConsumer;
+
+        public HandoffBench(Buffer buffer) {
+            mBuffer = buffer;
+        }
+
+        @Override
+        public void setUp() {
+            mStopped = false;
+            mConsumer = new Thread() {
+                @Override
+                public void run() {
+                    while (true) {
+                        BufferData data = mBuffer.getFull();
+                        if (null == data) {
+                            break;
+                        }
+                        if (data.isEndOfInput()) {
+                            mRunDone.release();
+                            if (mStopped) {
+                                break;
+                            }
+                        } else {
+                            mBuffer.putEmpty(data);
+                        }
+                    }
+                }
+            };
+            mConsumer.start();
+            addThread(mConsumer);
+        }
+
+        @Override
+        public void tearDown() {
+            mStopped = true;
+            mBuffer.putFull(BufferData.getEmptyBuffer());
+            try {
+                mConsumer.join();
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+        }
+
+        @Override
+        public long run() {
+            for (int i = 0; i < HANDOFFS; ++i) {
+                BufferData data = mBuffer.getEmpty();
+                data.setFilledSize(SAMPLES_PER_BUFFER * 2);
+                mBuffer.putFull(data);
+            }
+            // 消费线程处理完结束标志时所有缓冲区都已归还，不需要reset
+            mBuffer.putFull(BufferData.getEmptyBuffer());
+            mRunDone.acquireUninterruptibly();
+            return (long) HANDOFFS * SAMPLES_PER_BUFFER;
+        }
+    }
+
+    /**
+     * 只有一个缓冲区时每次getEmpty都要等消费线程归还，即一次往返
+     */
+    private static void measureLatency(String name, Buffer buffer) {
+        double perSecond = Bench.measure(name, new HandoffBench(buffer));
+        System.out.println(String.format("    %.0f ns/round trip", SAMPLES_PER_BUFFER * 1e9 / perSecond));
+    }
+
+    public static void main(String[] args) {
+        int count = Common.DEFAULT_BUFFER_COUNT;
+        int size = Common.DEFAULT_BUFFER_SIZE;
+        Bench.measure("buffer linked", new HandoffBench(new Buffer(count, size)));
+        // 单核上忙等会占满生产者和消费者交替的时间片
+        if (Runtime.getRuntime().availableProcessors() > 1) {
+            Bench.measure("buffer ring spin", new HandoffBench(new Buffer(count, size, SpscRing.WAIT_SPIN)));
+        }
+        Bench.measure("buffer ring yield", new HandoffBench(new Buffer(count, size, SpscRing.WAIT_YIELD)));
+        Bench.measure("buffer ring park", new HandoffBench(new Buffer(count, size, SpscRing.WAIT_PARK)));
+
+        measureLatency("latency linked", new Buffer(1, size));
+        if (Runtime.getRuntime().availableProcessors() > 1) {
+            measureLatency("latency ring spin", new Buffer(1, size, SpscRing.WAIT_SPIN));
+        }
+        measureLatency("latency ring yield", new Buffer(1, size, SpscRing.WAIT_YIELD));
+        measureLatency("latency ring park", new Buffer(1, size, SpscRing.WAIT_PARK));
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2013 gujicheng
+ * 
+ * Licensed under the GPL License Version 2.0;
+ * you may not use this file except in compliance with the License.
+ * 
+ * If you have any question, please contact me.
+ * 
+ *************************************************************************
+ **                   Author information                                **
+ *************************************************************************
+ ** Email: gujicheng197@126.com                                         **
+ ** QQ   : 29600731                                                     **
+ ** Weibo: http://weibo.com/gujicheng197                                **
+ *************************************************************************
+ */
+package com.libra.sinvoice.bench;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import com.libra.sinvoice.Buffer.BufferData;
+import com.libra.sinvoice.Common;
+import com.libra.sinvoice.Decoder;
+import com.libra.sinvoice.Record;
+import com.libra.sinvoice.SinVoiceRenderer;
+import com.libra.sinvoice.VoiceRecognition;
+
+/**
+ * 录音数据的三种存储方式交给解码器的开销：读入采样点数组、读入直接内存、读入字节数组<br>
+ * 数据按AudioRecord写入后的样子预先填好，只测量VoiceRecognition把它们变成解码器输入的部分；
+ * AudioRecord在本地拷贝的开销与存储方式的关系只能在设备上测量。
+ */
+public class CaptureBenchmark {
+    private final static String CODE_BOOK = "abcde";
+    private final static String TEXT = "abcdeabcdeabcde";
+    private final static int MESSAGES = 20;
+
+    /**
+     * 只读一遍采样点，代表解码器最少要做的工作
+     */
+    static class SumDecoder implements Decoder {
+        private long mSum;
+
+        @Override
+        public void setListener(Listener listener) {
+        }
+
+        @Override
+        public void reset() {
+        }
+
+        @Override
+        public void process(short[] samples, int count) {
+            long sum = mSum;
+            for (int i = 0; i < count; ++i) {
+                sum += samples[i];
+            }
+            mSum = sum;
+        }
+
+        @Override
+        public float getMinSymbolDuration(int index, int frequency) {
+            return 0;
+        }
+
+        public long getSum() {
+            return mSum;
+        }
+    }
+
+    static class CaptureBench extends Bench implements VoiceRecognition.Callback {
+        private final VoiceRecognition mRecognition;
+        private final List<BufferData> mSignal;
+        private final long mSamples;
+        private Iterator<BufferData> mNext;
+
+        public CaptureBench(Decoder decoder, List<BufferData> signal) {
+            mRecognition = new VoiceRecognition(this, Common.DEFAULT_SAMPLE_RATE, Record.CHANNEL_1, Record.BITS_16, decoder);
+            mSignal = signal;
+            long samples = 0;
+            for (BufferData data : signal) {
+                samples += data.getFilledSize() / 2;
+            }
+            mSamples = samples;
+        }
+
+        @Override
+        public long run() {
+            mNext = mSignal.iterator();
+            mRecognition.start();
+            return mSamples;
+        }
+
+        @Override
+        public BufferData getRecognitionBuffer() {
+            return mNext.hasNext() ? mNext.next() : BufferData.getEmptyBuffer();
+        }
+
+        @Override
+        public void freeRecognitionBuffer(BufferData buffer) {
+        }
+    }
+
+    /**
+     * @param storage BufferData.STORAGE_*
+     */
+    static List<BufferData> render(int storage) {
+        SinVoiceRenderer renderer = new SinVoiceRenderer(CODE_BOOK);
+        byte pcm[] = renderer.renderToWav(TEXT, 200);
+        List<BufferData> signal = new ArrayList<BufferData>();
+        for (int m = 0; m < MESSAGES; ++m) {
+            // 跳过44字节的WAV头
+            for (int offset = 44; offset < pcm.length; offset += Common.DEFAULT_BUFFER_SIZE) {
+                int size = Math.min(Common.DEFAULT_BUFFER_SIZE, pcm.length - offset);
+                BufferData data = new BufferData(Common.DEFAULT_BUFFER_SIZE, storage);
+                // 与AudioRecord相同：采样点数组和直接内存为本地字节序，字节数组为小端
+                ByteBuffer source = ByteBuffer.wrap(pcm, offset, size).order(ByteOrder.LITTLE_ENDIAN);
+                if (null != data.mSamples) {
+                    source.asShortBuffer().get(data.mSamples, 0, size / 2);
+                } else if (data.isDirect()) {
+                    for (int i = 0; i < size / 2; ++i) {
+                        data.getByteBuffer().putShort(2 * i, source.getShort(offset + 2 * i));
+                    }
+                } else {
+                    System.arraycopy(pcm, offset, data.mData, 0, size);
+                }
+                data.setFilledSize(size);
+                signal.add(data);
+            }
+        }
+        return signal;
+    }
+
+    public static void main(String[] args) {
+        int[] storages = { BufferData.STORAGE_SAMPLES, BufferData.STORAGE_DIRECT, BufferData.STORAGE_HEAP };
+        String[] names = { "short[]", "direct", "byte[]" };
+        for (int i = 0; i < storages.length; ++i) {
+            List<BufferData> signal = render(storages[i]);
+            Bench.measure("capture " + names[i] + " sum", new CaptureBench(new SumDecoder(), signal));
+            Bench.measure("capture " + names[i] + " goertzel", new CaptureBench(VoiceRecognition.createDecoder(VoiceRecognition.DECODER_GOERTZEL, Common.DEFAULT_SAMPLE_RATE), signal));
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2013 gujicheng
+ * 
+ * Licensed under the GPL License Version 2.0;
+ * you may not use this file except in compliance with the License.
+ * 
+ * If you have any question, please contact me.
+ * 
+ *************************************************************************
+ **                   Author information                                **
+ *************************************************************************
+ ** Email: gujicheng197@126.com                                         **
+ ** QQ   : 29600731                                                     **
+ ** Weibo: http://weibo.com/gujicheng197                                **
+ *************************************************************************
+ */
+package com.libra.sinvoice.bench;
+
+import com.libra.sinvoice.Buffer.BufferData;
+import com.libra.sinvoice.Common;
+import com.libra.sinvoice.Encoder;
+import com.libra.sinvoice.ExactOscillator;
+import com.libra.sinvoice.Oscillator;
+import com.libra.sinvoice.SinGenerator;
+import com.libra.sinvoice.TableOscillator;
+import com.libra.sinvoice.WaveformCache;
+
+/**
+ * SinGenerator.gen()按音频、位深、振荡器和是否使用音波缓存分别测量吞吐量
+ */
+public class GeneratorBenchmark {
+    private final static int SAMPLE_RATE = Common.DEFAULT_SAMPLE_RATE;
+    private final static int TONES_PER_RUN = 50;
+
+    private static class GenBench extends Bench implements SinGenerator.Callback {
+        private final SinGenerator mGenerator;
+        private final BufferData mBuffer = new BufferData(Common.DEFAULT_BUFFER_SIZE);
+        private final int mGenRate;
+
+        public GenBench(int genRate, int bits, Oscillator oscillator, WaveformCache cache) {
+            mGenRate = genRate;
+            mGenerator = new SinGenerator(this, SAMPLE_RATE, bits, Common.DEFAULT_BUFFER_SIZE);
+            mGenerator.setOscillator(oscillator);
+            mGenerator.setWaveformCache(cache);
+        }
+
+        @Override
+        public void setUp() {
+            mGenerator.start();
+        }
+
+        @Override
+        public void tearDown() {
+            mGenerator.stop();
+        }
+
+        @Override
+        public long run() {
+            for (int i = 0; i < TONES_PER_RUN; ++i) {
+                mGenerator.gen(mGenRate, Common.DEFAULT_GEN_DURATION);
+            }
+            return (long) TONES_PER_RUN * Common.DEFAULT_GEN_DURATION * SAMPLE_RATE / 1000;
+        }
+
+        @Override
+        public BufferData getGenBuffer() {
+            mBuffer.reset();
+            return mBuffer;
+        }
+
+        @Override
+        public void freeGenBuffer(BufferData buffer) {
+        }
+    }
+
+    public static void main(String[] args) {
+        int[] bitsList = { SinGenerator.BITS_8, SinGenerator.BITS_16 };
+        for (int bits : bitsList) {
+            String depth = (SinGenerator.BITS_16 == bits) ? "16bit" : "8bit";
+            for (int freq : Encoder.getCodeFrequencies()) {
+                String suffix = " " + freq + "Hz " + depth;
+                Bench.measure("gen exact" + suffix, new GenBench(freq, bits, new ExactOscillator(), null));
+                Bench.measure("gen table" + suffix, new GenBench(freq, bits, new TableOscillator(), null));
+                Bench.measure("gen cached" + suffix, new GenBench(freq, bits, new ExactOscillator(), new WaveformCache(WaveformCache.DEFAULT_MAX_BYTES)));
+            }
+        }
+    }
+}
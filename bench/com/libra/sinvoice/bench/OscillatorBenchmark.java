@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2013 gujicheng
+ * 
+ * Licensed under the GPL License Version 2.0;
+ * you may not use this file except in compliance with the License.
+ * 
+ * If you have any question, please contact me.
+ * 
+ *************************************************************************
+ **                   Author information                                **
+ *************************************************************************
+ ** Email: gujicheng197@126.com                                         **
+ ** QQ   : 29600731                                                     **
+ ** Weibo: http://weibo.com/gujicheng197                                **
+ *************************************************************************
+ */
+package com.libra.sinvoice.bench;
+
+import com.libra.sinvoice.ExactOscillator;
+import com.libra.sinvoice.Oscillator;
+import com.libra.sinvoice.SinGenerator;
+import com.libra.sinvoice.TableOscillator;
+
+/**
+ * 比较精确振荡器和查表振荡器每秒生成的样本数
+ */
+public class OscillatorBenchmark {
+    private final static int SAMPLE_RATE = 44100;
+    private final static int SAMPLES = SAMPLE_RATE;
+    private final static int[] FREQUENCIES = { 1422, 2321, 4410 };
+
+    private static class OscillatorBench extends Bench {
+        private final Oscillator mOscillator;
+        private final int mGenRate;
+        private final int mAmplitude;
+        private int mSink;
+
+        public OscillatorBench(Oscillator oscillator, int genRate, int bits) {
+            mOscillator = oscillator;
+            mGenRate = genRate;
+            mAmplitude = bits / 2;
+        }
+
+        @Override
+        public long run() {
+            mOscillator.reset(mGenRate, SAMPLE_RATE);
+            int sum = 0;
+            for (int i = 0; i < SAMPLES; ++i) {
+                sum += mOscillator.next(mAmplitude);
+            }
+            mSink += sum;
+            return SAMPLES;
+        }
+    }
+
+    public static void main(String[] args) {
+        int[] bitsList = { SinGenerator.BITS_8, SinGenerator.BITS_16 };
+        for (int bits : bitsList) {
+            for (int freq : FREQUENCIES) {
+                String suffix = " " + freq + "Hz " + ((SinGenerator.BITS_16 == bits) ? "16bit" : "8bit");
+                Bench.measure("exact" + suffix, new OscillatorBench(new ExactOscillator(), freq, bits));
+                Bench.measure("table" + suffix, new OscillatorBench(new TableOscillator(), freq, bits));
+            }
+        }
+    }
+}
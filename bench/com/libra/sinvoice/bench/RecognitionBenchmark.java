@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2013 gujicheng
+ * 
+ * Licensed under the GPL License Version 2.0;
+ * you may not use this file except in compliance with the License.
+ * 
+ * If you have any question, please contact me.
+ * 
+ *************************************************************************
+ **                   Author information                                **
+ *************************************************************************
+ ** Email: gujicheng197@126.com                                         **
+ ** QQ   : 29600731                                                     **
+ ** Weibo: http://weibo.com/gujicheng197                                **
+ *************************************************************************
+ */
+package com.libra.sinvoice.bench;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import com.libra.sinvoice.Buffer.BufferData;
+import com.libra.sinvoice.Common;
+import com.libra.sinvoice.Decoder;
+import com.libra.sinvoice.SinVoiceRenderer;
+import com.libra.sinvoice.VoiceRecognition;
+
+/**
+ * 各解码器处理预先生成的干净信号和加噪信号的吞吐量，同时检查解码结果
+ */
+public class RecognitionBenchmark {
+    private final static String CODE_BOOK = "abcde";
+    private final static String TEXT = "abcdeabcdeabcde";
+    private final static int MESSAGES = 10;
+    private final static int MUTE_INTERVAL = 200;
+    private final static double NOISE = 0.2;
+
+    private static class RecognitionBench extends Bench implements Decoder.Listener {
+        private final Decoder mDecoder;
+        private final List<BufferData> mSignal;
+        private final long mSamples;
+        private int mStopCount;
+
+        public RecognitionBench(int decoder, List<BufferData> signal) {
+            mDecoder = VoiceRecognition.createDecoder(decoder, Common.DEFAULT_SAMPLE_RATE);
+            mDecoder.setListener(this);
+            mSignal = signal;
+            long samples = 0;
+            for (BufferData data : signal) {
+                samples += data.getFilledSize() / 2;
+            }
+            mSamples = samples;
+        }
+
+        @Override
+        public long run() {
+            mStopCount = 0;
+            mDecoder.reset();
+            for (BufferData data : mSignal) {
+                mDecoder.process(data.mSamples, data.getFilledSize() / 2);
+            }
+            return mSamples;
+        }
+
+        @Override
+        public void onDecode(int index, float energy, float confidence) {
+            if (Common.STOP_TOKEN == index) {
+                ++mStopCount;
+            }
+        }
+
+        public int getStopCount() {
+            return mStopCount;
+        }
+    }
+
+    static List<BufferData> render(double noise) {
+        SinVoiceRenderer renderer = new SinVoiceRenderer(CODE_BOOK);
+        List<BufferData> signal = new ArrayList<BufferData>();
+        Random random = new Random(1);
+        for (int m = 0; m < MESSAGES; ++m) {
+            byte pcm[] = renderer.renderToWav(TEXT, MUTE_INTERVAL);
+            // 跳过44字节的WAV头
+            for (int offset = 44; offset < pcm.length; offset += Common.DEFAULT_BUFFER_SIZE) {
+                int size = Math.min(Common.DEFAULT_BUFFER_SIZE, pcm.length - offset);
+                BufferData data = new BufferData(Common.DEFAULT_BUFFER_SIZE, BufferData.STORAGE_SAMPLES);
+                ByteBuffer.wrap(pcm, offset, size).order(ByteOrder.LITTLE_ENDIAN).asShortBuffer().get(data.mSamples, 0, size / 2);
+                data.setFilledSize(size);
+                if (noise > 0) {
+                    addNoise(data, noise, random);
+                }
+                signal.add(data);
+            }
+        }
+        return signal;
+    }
+
+    private static void addNoise(BufferData data, double noise, Random random) {
+        int count = data.getFilledSize() / 2;
+        for (int i = 0; i < count; ++i) {
+            double v = data.mSamples[i] + random.nextGaussian() * noise * 32768;
+            data.mSamples[i] = (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, v));
+        }
+    }
+
+    public static void main(String[] args) {
+        List<BufferData> clean = render(0);
+        List<BufferData> noisy = render(NOISE);
+        int[] decoders = { VoiceRecognition.DECODER_ZERO_CROSSING, VoiceRecognition.DECODER_GOERTZEL, VoiceRecognition.DECODER_FFT };
+        String[] names = { "zero-crossing", "goertzel", "fft" };
+        for (int i = 0; i < decoders.length; ++i) {
+            RecognitionBench bench = new RecognitionBench(decoders[i], clean);
+            Bench.measure("recognition " + names[i] + " clean", bench);
+            System.out.println("    decoded " + bench.getStopCount() + "/" + MESSAGES + " messages");
+
+            bench = new RecognitionBench(decoders[i], noisy);
+            Bench.measure("recognition " + names[i] + " noisy", bench);
+            System.out.println("    decoded " + bench.getStopCount() + "/" + MESSAGES + " messages");
+        }
+    }
+}
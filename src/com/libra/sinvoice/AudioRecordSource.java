@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2013 gujicheng
+ * 
+ * Licensed under the GPL License Version 2.0;
+ * you may not use this file except in compliance with the License.
+ * 
+ * If you have any question, please contact me.
+ * 
+ *************************************************************************
+ **                   Author information                                **
+ *************************************************************************
+ ** Email: gujicheng197@126.com                                         **
+ ** QQ   : 29600731                                                     **
+ ** Weibo: http://weibo.com/gujicheng197                                **
+ *************************************************************************
+ */
+package com.libra.sinvoice;
+
+import android.media.AudioFormat;
+import android.media.AudioRecord;
+import android.media.MediaRecorder;
+
+import com.libra.sinvoice.Buffer.BufferData;
+
+/**
+ * 通过AudioRecord从麦克风录音
+ */
+public class AudioRecordSource implements AudioSource {
+    private final static String TAG = "AudioRecordSource";
+
+    private int mFrequence;
+    private int mBufferSize;
+    private int mChannelConfig = AudioFormat.CHANNEL_IN_MONO;
+    private int mAudioEncoding = AudioFormat.ENCODING_PCM_16BIT;
+    private AudioRecord mRecord;
+
+    /**
+     * @param frequence 采样频率
+     * @param channel Record.CHANNEL_1 或 Record.CHANNEL_2
+     * @param bits Record.BITS_8 或 Record.BITS_16
+     * @param bufferSize
+     */
+    public AudioRecordSource(int frequence, int channel, int bits, int bufferSize) {
+        mFrequence = frequence;
+        mBufferSize = bufferSize;
+
+        switch (channel) {
+        case Record.CHANNEL_1:
+            mChannelConfig = AudioFormat.CHANNEL_IN_MONO;
+            break;
+        case Record.CHANNEL_2:
+            mChannelConfig = AudioFormat.CHANNEL_IN_STEREO;
+            break;
+        }
+
+        switch (bits) {
+        case Record.BITS_8:
+            mAudioEncoding = AudioFormat.ENCODING_PCM_8BIT;
+            break;
+
+        case Record.BITS_16:
+            mAudioEncoding = AudioFormat.ENCODING_PCM_16BIT;
+            break;
+        }
+    }
+
+    @Override
+    public boolean open() {
+        int minBufferSize = AudioRecord.getMinBufferSize(mFrequence, mChannelConfig, mAudioEncoding);
+        LogHelper.d(TAG, "minBufferSize:" + minBufferSize);
+        if (minBufferSize <= 0) {
+            LogHelper.e(TAG, "unsupported sampleRate:" + mFrequence);
+            return false;
+        }
+
+        // 低采样率时每次读取的字节数可以小于AudioRecord要求的内部缓冲区
+        // 第二个参数，采样频率
+        mRecord = new AudioRecord(MediaRecorder.AudioSource.MIC, mFrequence, mChannelConfig, mAudioEncoding, Math.max(mBufferSize, minBufferSize));
+        try {
+            // 开始收集声音
+            mRecord.startRecording();
+            LogHelper.d(TAG, "record start");
+            return true;
+        } catch (IllegalStateException e) {
+            e.printStackTrace();
+            LogHelper.e(TAG, "start record error");
+            mRecord.release();
+            mRecord = null;
+            return false;
+        }
+    }
+
+    @Override
+    public int read(BufferData data, int size) {
+        if (null != data.mSamples) {
+            // 按采样点读取，返回值换算成字节数
+            int count = mRecord.read(data.mSamples, 0, size / 2);
+            return (count > 0) ? count * 2 : count;
+        }
+        if (data.isDirect()) {
+            // 直接写入本地内存，不经过Java堆
+            return mRecord.read(data.getByteBuffer(), size);
+        }
+        return mRecord.read(data.mData, 0, size);
+    }
+
+    @Override
+    public void close() {
+        if (null != mRecord) {
+            try {
+                mRecord.stop();
+            } catch (IllegalStateException e) {
+                e.printStackTrace();
+                LogHelper.e(TAG, "stop record error");
+            }
+            mRecord.release();
+            mRecord = null;
+            LogHelper.d(TAG, "record stop");
+        }
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright (C) 2013 gujicheng
+ * 
+ * Licensed under the GPL License Version 2.0;
+ * you may not use this file except in compliance with the License.
+ * 
+ * If you have any question, please contact me.
+ * 
+ *************************************************************************
+ **                   Author information                                **
+ *************************************************************************
+ ** Email: gujicheng197@126.com                                         **
+ ** QQ   : 29600731                                                     **
+ ** Weibo: http://weibo.com/gujicheng197                                **
+ *************************************************************************
+ */
+package com.libra.sinvoice;
+
+import com.libra.sinvoice.Buffer.BufferData;
+
+/**
+ * 声音输出，PcmPlayer把编码好的数据写到这里<br>
+ * Android上为{@link AudioTrackSink}，也可以是{@link LoopbackAudio}或文件等
+ */
+public interface AudioSink {
+    /**
+     * 开始写入前调用
+     * @return 是否可以写入
+     */
+    boolean open();
+
+    /**
+     * 写入一块数据，可以阻塞到写完
+     * @return 写入的字节数，小于0为出错
+     */
+    int write(BufferData data);
+
+    /**
+     * 写入结束后调用
+     */
+    void close();
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright (C) 2013 gujicheng
+ * 
+ * Licensed under the GPL License Version 2.0;
+ * you may not use this file except in compliance with the License.
+ * 
+ * If you have any question, please contact me.
+ * 
+ *************************************************************************
+ **                   Author information                                **
+ *************************************************************************
+ ** Email: gujicheng197@126.com                                         **
+ ** QQ   : 29600731                                                     **
+ ** Weibo: http://weibo.com/gujicheng197                                **
+ *************************************************************************
+ */
+package com.libra.sinvoice;
+
+import com.libra.sinvoice.Buffer.BufferData;
+
+/**
+ * 声音输入，Record从这里读取数据交给识别<br>
+ * Android上为{@link AudioRecordSource}，也可以是{@link LoopbackAudio}等
+ */
+public interface AudioSource {
+    /**
+     * 开始读取前调用
+     * @return 是否可以读取
+     */
+    boolean open();
+
+    /**
+     * 读取数据到data中，从位置0开始
+     * @param size 最多读取的字节数
+     * @return 读取的字节数，0为暂时没有数据，小于0为出错
+     */
+    int read(BufferData data, int size);
+
+    /**
+     * 读取结束后调用
+     */
+    void close();
+}
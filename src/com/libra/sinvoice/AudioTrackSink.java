@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2013 gujicheng
+ * 
+ * Licensed under the GPL License Version 2.0;
+ * you may not use this file except in compliance with the License.
+ * 
+ * If you have any question, please contact me.
+ * 
+ *************************************************************************
+ **                   Author information                                **
+ *************************************************************************
+ ** Email: gujicheng197@126.com                                         **
+ ** QQ   : 29600731                                                     **
+ ** Weibo: http://weibo.com/gujicheng197                                **
+ *************************************************************************
+ */
+package com.libra.sinvoice;
+
+import android.media.AudioFormat;
+import android.media.AudioManager;
+import android.media.AudioTrack;
+
+import com.libra.sinvoice.Buffer.BufferData;
+
+/**
+ * 通过AudioTrack以流的形式播放<br>
+ * 循环播放时另外使用MODE_STATIC的AudioTrack，数据只写入一次，由setLoopPoints循环
+ */
+public class AudioTrackSink implements LoopingSink {
+    private final static String TAG = "AudioTrackSink";
+
+    private AudioTrack mAudio;
+    private long mPlayedLen;
+
+    private int mSampleRate;
+    private int mChannel;
+    private int mFormat;
+    // 正在循环的和等当前一遍播完后替换它的AudioTrack
+    private AudioTrack mLoopTrack;
+    private AudioTrack mPendingLoopTrack;
+    private AudioTrack.OnPlaybackPositionUpdateListener mLoopListener = new AudioTrack.OnPlaybackPositionUpdateListener() {
+        @Override
+        public void onMarkerReached(AudioTrack track) {
+        }
+
+        @Override
+        public void onPeriodicNotification(AudioTrack track) {
+            // 每播完一遍回调一次
+            swapLoop(track);
+        }
+    };
+
+    /**
+     * @param sampleRate 设置音频数据的采样率
+     * @param channel 设置输出声道,AudioFormat.CHANNEL_OUT_STERE双声道，AudioFormat.CHANNEL_OUT_MONO单声道
+     * @param format 设置音频数据块是8位还是16位
+     * @param bufferSize
+     * http://blog.chinaunix.net/uid-20546441-id-1645702.html
+     */
+    public AudioTrackSink(int sampleRate, int channel, int format, int bufferSize) {
+        bufferSize = Math.max(AudioTrack.getMinBufferSize(sampleRate, channel, format), bufferSize);
+        // 最后一个参数表示，已流的形式播放，即一部分一部分的播放
+        mAudio = new AudioTrack(AudioManager.STREAM_MUSIC, sampleRate, channel, format, bufferSize, AudioTrack.MODE_STREAM);
+        mPlayedLen = 0;
+        mSampleRate = sampleRate;
+        mChannel = channel;
+        mFormat = format;
+    }
+
+    @Override
+    public boolean open() {
+        mPlayedLen = 0;
+        return null != mAudio;
+    }
+
+    @Override
+    public int write(BufferData data) {
+        int len = mAudio.write(data.mData, 0, data.getFilledSize());
+
+        if (0 == mPlayedLen) {
+            mAudio.play();
+        }
+        mPlayedLen += len;
+        return len;
+    }
+
+    @Override
+    public void close() {
+        if (null != mAudio) {
+            mAudio.pause();
+            mAudio.flush();
+            mAudio.stop();
+        }
+    }
+
+    @Override
+    public synchronized boolean loop(byte[] pcm) {
+        int frameSize = ((AudioFormat.CHANNEL_OUT_STEREO == mChannel) ? 2 : 1) * ((AudioFormat.ENCODING_PCM_8BIT == mFormat) ? 1 : 2);
+        int frames = pcm.length / frameSize;
+        if (frames <= 0) {
+            return false;
+        }
+
+        AudioTrack track = new AudioTrack(AudioManager.STREAM_MUSIC, mSampleRate, mChannel, mFormat, frames * frameSize, AudioTrack.MODE_STATIC);
+        track.write(pcm, 0, frames * frameSize);
+        if (AudioTrack.STATE_INITIALIZED != track.getState()) {
+            LogHelper.e(TAG, "static track init failed:" + track.getState());
+            track.release();
+            return false;
+        }
+        if (AudioTrack.SUCCESS != track.setLoopPoints(0, frames, -1)) {
+            LogHelper.e(TAG, "set loop points failed");
+            track.release();
+            return false;
+        }
+        track.setPlaybackPositionUpdateListener(mLoopListener);
+        track.setPositionNotificationPeriod(frames);
+
+        if (null == mLoopTrack) {
+            mLoopTrack = track;
+            track.play();
+        } else {
+            // 等当前这一遍播完，在结尾的静音处切换
+            if (null != mPendingLoopTrack) {
+                mPendingLoopTrack.release();
+            }
+            mPendingLoopTrack = track;
+        }
+        return true;
+    }
+
+    private synchronized void swapLoop(AudioTrack track) {
+        if (track == mLoopTrack && null != mPendingLoopTrack) {
+            mLoopTrack.stop();
+            mLoopTrack.release();
+            mLoopTrack = mPendingLoopTrack;
+            mPendingLoopTrack = null;
+            mLoopTrack.play();
+        }
+    }
+
+    @Override
+    public synchronized void stopLoop() {
+        if (null != mPendingLoopTrack) {
+            mPendingLoopTrack.release();
+            mPendingLoopTrack = null;
+        }
+        if (null != mLoopTrack) {
+            mLoopTrack.stop();
+            mLoopTrack.release();
+            mLoopTrack = null;
+        }
+    }
+
+    @Override
+    public synchronized boolean isLooping() {
+        return null != mLoopTrack;
+    }
+}
@@ -16,40 +16,117 @@
  */
 package com.libra.sinvoice;
 
-import java.util.concurrent.BlockingQueue;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
 import java.util.concurrent.LinkedBlockingQueue;
 
 public class Buffer {
     private final static String TAG = "Buffer";
 
-    private BlockingQueue<BufferData> mProducerQueue;
-    private BlockingQueue<BufferData> mConsumeQueue;
+    private HandoffQueue<BufferData> mProducerQueue;
+    private HandoffQueue<BufferData> mConsumeQueue;
     private int mBufferCount;
+    private SinVoiceMetrics mMetrics;
     private int mBufferSize;
 
-    // when mData is null, means it is end of input
+    // when mData, mByteBuffer and mSamples are all null, means it is end of input
     public static class BufferData {
+        // 存储方式：字节数组、16位采样点数组、本地字节序的直接内存
+        public final static int STORAGE_HEAP = 0;
+        public final static int STORAGE_SAMPLES = 1;
+        public final static int STORAGE_DIRECT = 2;
+
+        // 字节数据，使用采样点数组、直接内存或包装不在Java堆上的数据(如内存映射的文件)时为null
         public byte mData[];
+        // 16位采样点，只在STORAGE_SAMPLES时不为null；大小和填充大小仍按字节计
+        public short mSamples[];
+        private ByteBuffer mByteBuffer;
+        private ShortBuffer mShortBuffer;
         private int mFilledSize;
         private int mMaxBufferSize;
+        // 数据就绪的时间(System.nanoTime())，如录音读完这块数据的时间，0为没有记录
+        private long mTimestampNanos;
         private static BufferData sEmptyBuffer = new BufferData(0);
 
         public BufferData(int maxBufferSize) {
+            this(maxBufferSize, STORAGE_HEAP);
+        }
+
+        /**
+         * @param maxBufferSize 最大字节数
+         * @param storage {@link #STORAGE_HEAP}、{@link #STORAGE_SAMPLES}或{@link #STORAGE_DIRECT}；
+         * STORAGE_SAMPLES时录音直接读入mSamples，识别时不需要再由字节拼出采样点，但没有字节视图；
+         * STORAGE_DIRECT时录音由AudioRecord.read(ByteBuffer, int)写入本地内存，只用于录音
+         */
+        public BufferData(int maxBufferSize, int storage) {
             mMaxBufferSize = maxBufferSize;
             reset();
 
             if (maxBufferSize > 0) {
                 mMaxBufferSize = maxBufferSize;
-                mData = new byte[mMaxBufferSize];
+                if (STORAGE_SAMPLES == storage) {
+                    mData = null;
+                    mByteBuffer = null;
+                    mSamples = new short[mMaxBufferSize / 2];
+                    mShortBuffer = ShortBuffer.wrap(mSamples);
+                    return;
+                }
+
+                if (STORAGE_DIRECT == storage) {
+                    mData = null;
+                    // AudioRecord按本地字节序写入
+                    mByteBuffer = ByteBuffer.allocateDirect(mMaxBufferSize).order(ByteOrder.nativeOrder());
+                } else {
+                    mData = new byte[mMaxBufferSize];
+                    // SinGenerator按小端写入
+                    mByteBuffer = ByteBuffer.wrap(mData).order(ByteOrder.LITTLE_ENDIAN);
+                }
+                mShortBuffer = mByteBuffer.asShortBuffer();
             } else {
                 mData = null;
             }
         }
 
+        /**
+         * 包装已有的数据，如内存映射的文件
+         * @param buffer 数据从位置0开始，字节序需已设置好
+         * @param filledSize 数据字节数
+         */
+        public BufferData(ByteBuffer buffer, int filledSize) {
+            mMaxBufferSize = buffer.capacity();
+            mData = buffer.hasArray() ? buffer.array() : null;
+            mByteBuffer = buffer;
+            mShortBuffer = buffer.asShortBuffer();
+            mFilledSize = filledSize;
+        }
+
         public static BufferData getEmptyBuffer() {
             return sEmptyBuffer;
         }
 
+        final public boolean isEndOfInput() {
+            return null == mByteBuffer && null == mSamples;
+        }
+
+        final public boolean isDirect() {
+            return null != mByteBuffer && mByteBuffer.isDirect();
+        }
+
+        /**
+         * 字节视图，堆内存时包装mData，STORAGE_SAMPLES时为null
+         */
+        final public ByteBuffer getByteBuffer() {
+            return mByteBuffer;
+        }
+
+        /**
+         * 16位采样视图，按绝对位置访问，STORAGE_SAMPLES时包装mSamples
+         */
+        final public ShortBuffer getShortBuffer() {
+            return mShortBuffer;
+        }
+
         final public void reset() {
             mFilledSize = 0;
         }
@@ -65,6 +142,39 @@ public class Buffer {
         final public int getFilledSize() {
             return mFilledSize;
         }
+
+        final public void setTimestampNanos(long nanos) {
+            mTimestampNanos = nanos;
+        }
+
+        final public long getTimestampNanos() {
+            return mTimestampNanos;
+        }
+    }
+
+    /**
+     * 队列的存取接口，LinkedBlockingQueue和SpscRing都满足
+     */
+    static interface HandoffQueue<T> {
+        T take() throws InterruptedException;
+
+        void put(T e) throws InterruptedException;
+
+        T poll();
+
+        T peek();
+
+        boolean offer(T e);
+
+        int size();
+    }
+
+    private static class LinkedHandoffQueue<T> extends LinkedBlockingQueue<T> implements HandoffQueue<T> {
+        private static final long serialVersionUID = 1L;
+
+        public LinkedHandoffQueue(int capacity) {
+            super(capacity);
+        }
     }
 
     public Buffer() {
@@ -72,19 +182,42 @@ public class Buffer {
     }
 
     /**
+     * 使用LinkedBlockingQueue，可在任意多个线程间传递
      * @param bufferCount 缓存声音数组的数量
      * @param bufferSize 数组最大字节数
      */
     public Buffer(int bufferCount, int bufferSize) {
+        // we want to put the end buffer, so need to add 1
+        this(bufferCount, bufferSize, new LinkedHandoffQueue<BufferData>(bufferCount), new LinkedHandoffQueue<BufferData>(bufferCount + 1), BufferData.STORAGE_HEAP);
+    }
+
+    /**
+     * 使用无锁环形队列，只能有一个生产线程（getEmpty/putFull）和一个消费线程（getFull/putEmpty）
+     * @param bufferCount 缓存声音数组的数量
+     * @param bufferSize 数组最大字节数
+     * @param waitStrategy 等待策略，见{@link SpscRing#WAIT_SPIN}、{@link SpscRing#WAIT_YIELD}、{@link SpscRing#WAIT_PARK}
+     */
+    public Buffer(int bufferCount, int bufferSize, int waitStrategy) {
+        this(bufferCount, bufferSize, waitStrategy, BufferData.STORAGE_HEAP);
+    }
+
+    /**
+     * @param storage 所有数组的存储方式，见{@link BufferData#BufferData(int, int)}
+     */
+    public Buffer(int bufferCount, int bufferSize, int waitStrategy, int storage) {
+        // we want to put the end buffer, so need to add 1
+        this(bufferCount, bufferSize, new SpscRing<BufferData>(bufferCount, waitStrategy), new SpscRing<BufferData>(bufferCount + 1, waitStrategy), storage);
+    }
+
+    private Buffer(int bufferCount, int bufferSize, HandoffQueue<BufferData> producerQueue, HandoffQueue<BufferData> consumeQueue, int storage) {
         mBufferSize = bufferSize;
         mBufferCount = bufferCount;
-        mProducerQueue = new LinkedBlockingQueue<BufferData>(mBufferCount);
-        // we want to put the end buffer, so need to add 1
-        mConsumeQueue = new LinkedBlockingQueue<BufferData>(mBufferCount + 1);
+        mProducerQueue = producerQueue;
+        mConsumeQueue = consumeQueue;
 
         try {
             for (int i = 0; i < mBufferCount; ++i) {
-                mProducerQueue.put(new BufferData(mBufferSize));
+                mProducerQueue.put(new BufferData(mBufferSize, storage));
             }
         } catch (InterruptedException e) {
             e.printStackTrace();
@@ -92,11 +225,19 @@ public class Buffer {
         }
     }
 
+    /**
+     * 记录取数组的等待时间和队列中填充过的数组个数，为null时不记录
+     * @param metrics
+     */
+    public void setMetrics(SinVoiceMetrics metrics) {
+        mMetrics = metrics;
+    }
+
     public void reset() {
         int size = mProducerQueue.size();
         for (int i = 0; i < size; ++i) {
             BufferData data = mProducerQueue.peek();
-            if (null == data || null == data.mData) {
+            if (null == data || data.isEndOfInput()) {
                 mProducerQueue.poll();
             }
         }
@@ -104,8 +245,8 @@ public class Buffer {
         size = mConsumeQueue.size();
         for (int i = 0; i < size; ++i) {
             BufferData data = mConsumeQueue.poll();
-            if (null != data && null != data.mData) {
-                mProducerQueue.add(data);
+            if (null != data && !data.isEndOfInput()) {
+                mProducerQueue.offer(data);
             }
         }
 
@@ -125,7 +266,14 @@ public class Buffer {
      * @return
      */
     public BufferData getEmpty() {
-        return getImpl(mProducerQueue);
+        SinVoiceMetrics metrics = mMetrics;
+        if (null == metrics) {
+            return getImpl(mProducerQueue);
+        }
+        long start = System.nanoTime();
+        BufferData data = getImpl(mProducerQueue);
+        metrics.getEmptyWaitNanos().record(System.nanoTime() - start);
+        return data;
     }
 
     /**
@@ -142,7 +290,14 @@ public class Buffer {
      * @return
      */
     public BufferData getFull() {
-        return getImpl(mConsumeQueue);
+        SinVoiceMetrics metrics = mMetrics;
+        if (null == metrics) {
+            return getImpl(mConsumeQueue);
+        }
+        long start = System.nanoTime();
+        BufferData data = getImpl(mConsumeQueue);
+        metrics.getFullWaitNanos().record(System.nanoTime() - start);
+        return data;
     }
 
     /**
@@ -151,10 +306,15 @@ public class Buffer {
      * @return
      */
     public boolean putFull(BufferData data) {
-        return putImpl(data, mConsumeQueue);
+        boolean ret = putImpl(data, mConsumeQueue);
+        SinVoiceMetrics metrics = mMetrics;
+        if (null != metrics) {
+            metrics.getQueueOccupancy().record(mConsumeQueue.size());
+        }
+        return ret;
     }
 
-    private BufferData getImpl(BlockingQueue<BufferData> queue) {
+    private BufferData getImpl(HandoffQueue<BufferData> queue) {
         if (null != queue) {
             try {
                 return queue.take();
@@ -165,7 +325,7 @@ public class Buffer {
         return null;
     }
 
-    private boolean putImpl(BufferData data, BlockingQueue<BufferData> queue) {
+    private boolean putImpl(BufferData data, HandoffQueue<BufferData> queue) {
         if (null != queue && null != data) {
             try {
                 queue.put(data);
@@ -0,0 +1,184 @@
+/*
+ * Copyright (C) 2013 gujicheng
+ * 
+ * Licensed under the GPL License Version 2.0;
+ * you may not use this file except in compliance with the License.
+ * 
+ * If you have any question, please contact me.
+ * 
+ *************************************************************************
+ **                   Author information                                **
+ *************************************************************************
+ ** Email: gujicheng197@126.com                                         **
+ ** QQ   : 29600731                                                     **
+ ** Weibo: http://weibo.com/gujicheng197                                **
+ *************************************************************************
+ */
+package com.libra.sinvoice;
+
+/**
+ * 多音(MFSK和弦)码表<br>
+ * 每个符号同时发出N个音中的K个，共C(N, K)个符号。符号按组合数进制(combinadic)排序，
+ * 第一个为开始符号，最后一个为结束符号，与单音模式下首尾为开始、结束音相同。
+ * 不保存每个符号的和弦，编码时由符号序号算出，符号个数不超过{@link #MAX_SYMBOL_COUNT}。<br>
+ * 例如16个音中取3个有560个符号，每100ms约9.1bit，单音模式7个音只有约2.8bit。
+ */
+public class ChordTable {
+    private final static String TAG = "ChordTable";
+
+    // 相邻音间隔200Hz，都是100Hz的整数倍，在10ms的检测块内为整数个周期，互不泄漏
+    private final static int[] DEFAULT_FREQUENCY = { 1500, 1700, 1900, 2100, 2300, 2500, 2700, 2900, 3100, 3300, 3500, 3700, 3900, 4100, 4300, 4500 };
+
+    public final static int DEFAULT_TONES_PER_SYMBOL = 3;
+    // 每个符号约24bit，再多的符号在100ms内也无法可靠区分
+    public final static int MAX_SYMBOL_COUNT = 1 << 24;
+    // 超过它的组合数只用于比较，不需要精确值，避免long溢出
+    private final static long BINOMIAL_CAP = Long.MAX_VALUE / 2;
+
+    private int mFrequencies[];
+    private int mTonesPerSymbol;
+    private int mSymbolCount;
+    // 组合数 C(n, k)，下标为 n * (mTonesPerSymbol + 1) + k，大于BINOMIAL_CAP时取BINOMIAL_CAP
+    private long mBinomial[];
+
+    /**
+     * 默认的16个音，最高4500Hz，采样率低于10kHz时使用{@link #createDefault(int)}
+     */
+    public ChordTable() {
+        this(DEFAULT_FREQUENCY, DEFAULT_TONES_PER_SYMBOL);
+    }
+
+    public ChordTable(int tonesPerSymbol) {
+        this(DEFAULT_FREQUENCY, tonesPerSymbol);
+    }
+
+    public static ChordTable createDefault(int sampleRate) {
+        return createDefault(sampleRate, DEFAULT_TONES_PER_SYMBOL);
+    }
+
+    /**
+     * 默认的16个音；采样率放不下最高音时(如8kHz)，改为在该采样率的频带内等间隔取16个音，
+     * 符号个数不变，但只能与同一采样率的另一端通信
+     */
+    public static ChordTable createDefault(int sampleRate, int tonesPerSymbol) {
+        if (DEFAULT_FREQUENCY[DEFAULT_FREQUENCY.length - 1] <= FrequencyPlan.getMaxFrequency(sampleRate)) {
+            return new ChordTable(DEFAULT_FREQUENCY, tonesPerSymbol);
+        }
+        LogHelper.d(TAG, "default chord tones exceed sampleRate:" + sampleRate);
+        return new ChordTable(new FrequencyPlan(sampleRate, DEFAULT_FREQUENCY.length), tonesPerSymbol);
+    }
+
+    public ChordTable(FrequencyPlan plan, int tonesPerSymbol) {
+        this(plan.getFrequencies(), tonesPerSymbol);
+    }
+
+    /**
+     * @param frequencies 可用的音
+     * @param tonesPerSymbol 每个符号同时发出的音数，1到frequencies.length - 1
+     * @throws IllegalArgumentException 符号个数超过MAX_SYMBOL_COUNT
+     */
+    public ChordTable(int[] frequencies, int tonesPerSymbol) {
+        if (tonesPerSymbol < 1 || tonesPerSymbol >= frequencies.length) {
+            throw new IllegalArgumentException("tonesPerSymbol out of range:" + tonesPerSymbol);
+        }
+        mFrequencies = frequencies.clone();
+        mTonesPerSymbol = tonesPerSymbol;
+
+        int toneCount = mFrequencies.length;
+        int width = tonesPerSymbol + 1;
+        mBinomial = new long[(toneCount + 1) * width];
+        for (int n = 0; n <= toneCount; ++n) {
+            mBinomial[n * width] = 1;
+            for (int k = 1; k <= tonesPerSymbol && k <= n; ++k) {
+                long value = mBinomial[(n - 1) * width + k - 1] + ((k < n) ? mBinomial[(n - 1) * width + k] : 0);
+                mBinomial[n * width + k] = Math.min(value, BINOMIAL_CAP);
+            }
+        }
+        long symbolCount = binomial(toneCount, tonesPerSymbol);
+        if (symbolCount > MAX_SYMBOL_COUNT) {
+            throw new IllegalArgumentException("too many symbols: C(" + toneCount + ", " + tonesPerSymbol + ")");
+        }
+        mSymbolCount = (int) symbolCount;
+        LogHelper.d(TAG, "tones:" + toneCount + " per symbol:" + tonesPerSymbol + " symbols:" + mSymbolCount);
+    }
+
+    /**
+     * @return 默认的16个音
+     */
+    public static int[] getDefaultFrequencies() {
+        return DEFAULT_FREQUENCY.clone();
+    }
+
+    public int[] getFrequencies() {
+        return mFrequencies.clone();
+    }
+
+    /**
+     * @return 最高音是否在该采样率可以使用的范围内，见{@link FrequencyPlan#getMaxFrequency(int)}
+     */
+    public boolean isSupported(int sampleRate) {
+        int max = FrequencyPlan.getMaxFrequency(sampleRate);
+        for (int f : mFrequencies) {
+            if (f > max) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public int getToneCount() {
+        return mFrequencies.length;
+    }
+
+    public int getTonesPerSymbol() {
+        return mTonesPerSymbol;
+    }
+
+    public int getSymbolCount() {
+        return mSymbolCount;
+    }
+
+    /**
+     * @param symbol 0到getSymbolCount() - 1
+     * @param frequencies 长度至少为getTonesPerSymbol()，返回各音的频率
+     */
+    public void getChordFrequencies(int symbol, int[] frequencies) {
+        int n = mFrequencies.length;
+        for (int k = mTonesPerSymbol; k >= 1; --k) {
+            // 找最大的t使C(t, k) <= symbol
+            int t = n - 1;
+            while (binomial(t, k) > symbol) {
+                --t;
+            }
+            frequencies[k - 1] = mFrequencies[t];
+            symbol -= binomial(t, k);
+            n = t;
+        }
+    }
+
+    /**
+     * @param tones 从小到大排列的音的下标，长度为getTonesPerSymbol()
+     * @return 对应的符号，下标不合法时返回-1
+     */
+    public int getSymbol(int[] tones) {
+        long symbol = 0;
+        int prev = -1;
+        for (int k = 0; k < mTonesPerSymbol; ++k) {
+            int t = tones[k];
+            if (t <= prev || t >= mFrequencies.length) {
+                return -1;
+            }
+            // 组合数进制：第k个音(从1计)为t时贡献C(t, k)
+            symbol += binomial(t, k + 1);
+            prev = t;
+        }
+        return (int) symbol;
+    }
+
+    private long binomial(int n, int k) {
+        if (k > n) {
+            return 0;
+        }
+        return mBinomial[n * (mTonesPerSymbol + 1) + k];
+    }
+}
@@ -23,5 +23,18 @@ public class Common {
 
     public final static int DEFAULT_BUFFER_SIZE = 4096;
     public final static int DEFAULT_BUFFER_COUNT = 3;
-    public final static int DEFAULT_SAMPLE_RATE = 44100;
+    public final static int DEFAULT_SAMPLE_RATE = SinGenerator.SAMPLE_RATE_44;
+    // 接收端低功耗采样率，识别的计算量和缓冲区约为默认采样率的1/3；默认的7个音在此采样率下需用Goertzel或FFT解码
+    public final static int LOW_POWER_SAMPLE_RATE = SinGenerator.SAMPLE_RATE_16;
+    // 每个音持续的时间，ms
+    public final static int DEFAULT_GEN_DURATION = 100;
+
+    /**
+     * 按采样率缩放DEFAULT_BUFFER_SIZE，每块数据的时长与默认采样率时相同
+     * @return 字节数，为偶数
+     */
+    public static int getBufferSize(int sampleRate) {
+        int size = (int) ((long) DEFAULT_BUFFER_SIZE * sampleRate / DEFAULT_SAMPLE_RATE);
+        return Math.max(2, size & ~1);
+    }
 }
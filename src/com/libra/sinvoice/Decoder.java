@@ -0,0 +1,54 @@
+/*
+ * Copyright (C) 2013 gujicheng
+ * 
+ * Licensed under the GPL License Version 2.0;
+ * you may not use this file except in compliance with the License.
+ * 
+ * If you have any question, please contact me.
+ * 
+ *************************************************************************
+ **                   Author information                                **
+ *************************************************************************
+ ** Email: gujicheng197@126.com                                         **
+ ** QQ   : 29600731                                                     **
+ ** Weibo: http://weibo.com/gujicheng197                                **
+ *************************************************************************
+ */
+package com.libra.sinvoice;
+
+/**
+ * 解码器<br>
+ * 由VoiceRecognition逐个送入录音数据，解码出音在频率表中的位置
+ */
+public interface Decoder {
+    public static interface Listener {
+        /**
+         * @param index 识别出的音在频率表中的位置
+         * @param energy 该音的平均幅度，相对于满幅(0~1)
+         * @param confidence 该音能量占所有音能量的平均比例(0~1)
+         */
+        void onDecode(int index, float energy, float confidence);
+    }
+
+    void setListener(Listener listener);
+
+    /**
+     * 开始新的识别前调用，清除之前的状态
+     */
+    void reset();
+
+    /**
+     * 送入一段16位采样点
+     * @param samples 采样点，处理完后可被重用，解码器不能保留
+     * @param count 从位置0开始的采样点个数
+     */
+    void process(short[] samples, int count);
+
+    /**
+     * 能确认一个音的最短时长，发送端据此决定每个音的时长，见{@link SymbolTiming}
+     * @param index 音在频率表中的位置
+     * @param frequency 音的频率，和弦为其中最低的频率
+     * @return ms
+     */
+    float getMinSymbolDuration(int index, int frequency);
+}
@@ -16,6 +16,7 @@
  */
 package com.libra.sinvoice;
 
+import java.util.Iterator;
 import java.util.List;
 
 import com.libra.sinvoice.Buffer.BufferData;
@@ -40,6 +41,12 @@ public class Encoder implements SinGenerator.Listener, SinGenerator.Callback {
     private SinGenerator mSinGenerator;
     private Listener mListener;
     private Callback mCallback;
+    private int mFrequencies[];
+    private ChordTable mChordTable;
+    private int mChordFrequencies[];
+    private SymbolTiming mSymbolTiming;
+    private int mSampleRate;
+    private int mBits;
 
     public static interface Listener {
         void onStartEncode();
@@ -70,6 +77,9 @@ public class Encoder implements SinGenerator.Listener, SinGenerator.Callback {
     public Encoder(Callback callback, int sampleRate, int bits, int bufferSize) {
         mCallback = callback;
         mState = STATE_STOPED;
+        mSampleRate = sampleRate;
+        mFrequencies = getCodeFrequencies(sampleRate);
+        mBits = bits;
         mSinGenerator = new SinGenerator(this, sampleRate, bits, bufferSize);
         mSinGenerator.setListener(this);
     }
@@ -82,6 +92,162 @@ public class Encoder implements SinGenerator.Listener, SinGenerator.Callback {
         return CODE_FREQUENCY.length;
     }
 
+    /**
+     * 设置单音模式使用的频率规划，为null时使用采样率对应的默认7个音，见{@link FrequencyPlan#createDefault(int)}
+     * @param plan 采样率需与生成的采样率相同
+     */
+    public void setFrequencyPlan(FrequencyPlan plan) {
+        if (null != plan) {
+            mFrequencies = plan.getFrequencies();
+        } else {
+            mFrequencies = getCodeFrequencies(mSampleRate);
+        }
+    }
+
+    /**
+     * 按音计算时长，设置后encode的duration参数不再使用；为null时每个音都是固定时长
+     * @param timing
+     */
+    public void setSymbolTiming(SymbolTiming timing) {
+        mSymbolTiming = timing;
+    }
+
+    public SymbolTiming getSymbolTiming() {
+        return mSymbolTiming;
+    }
+
+    public int getSampleRate() {
+        return mSampleRate;
+    }
+
+    public int getBits() {
+        return mBits;
+    }
+
+    /**
+     * 设置和弦码表，之后每个code对应码表中的一个符号，同时发出多个音；为null时恢复单音
+     * @param table 最高音需在采样率允许的范围内，见{@link ChordTable#createDefault(int)}
+     * @throws IllegalArgumentException 码表中有超过0.45倍采样率的音
+     */
+    public void setChordTable(ChordTable table) {
+        if (null != table && !table.isSupported(mSampleRate)) {
+            throw new IllegalArgumentException("chord tones exceed sampleRate:" + mSampleRate);
+        }
+        mChordTable = table;
+        if (null != table) {
+            mChordFrequencies = new int[table.getTonesPerSymbol()];
+        }
+    }
+
+    public ChordTable getChordTable() {
+        return mChordTable;
+    }
+
+    /**
+     * @return 符号个数，包括开始、结束符号
+     */
+    public int getSymbolCount() {
+        if (null != mChordTable) {
+            return mChordTable.getSymbolCount();
+        }
+        return mFrequencies.length;
+    }
+
+    /**
+     * @return 单音模式当前使用的各音的频率，首尾为开始和结束音
+     */
+    public int[] getFrequencies() {
+        return mFrequencies.clone();
+    }
+
+    /**
+     * @return 各音的频率，首尾为开始和结束音
+     */
+    public final static int[] getCodeFrequencies() {
+        return CODE_FREQUENCY.clone();
+    }
+
+    /**
+     * @return 指定采样率下默认的7个音，见{@link FrequencyPlan#createDefault(int)}
+     */
+    public final static int[] getCodeFrequencies(int sampleRate) {
+        return FrequencyPlan.createDefault(sampleRate).getFrequencies();
+    }
+
+    /**
+     * 将文字转换为在码本中的位置，首尾加上开始、结束标志
+     * @param codeBook 码本
+     * @param text 文字，每个字符都必须在码本中
+     * @param codes 转换结果
+     * @return 是否转换成功
+     */
+    public final static boolean convertTextToCodes(String codeBook, String text, List<Integer> codes) {
+        return convertTextToCodes(codeBook, text, codes, CODE_FREQUENCY.length);
+    }
+
+    /**
+     * 同上，结束标志为symbolCount - 1
+     * @param symbolCount 符号个数，见{@link #getSymbolCount()}
+     */
+    public final static boolean convertTextToCodes(String codeBook, String text, List<Integer> codes, int symbolCount) {
+        return convertTextToCodes(codeBook, text, codes, symbolCount, false);
+    }
+
+    /**
+     * 同上<br>
+     * 接收端会忽略与前一个相同的音，repeatEscape为true时与前一个音相同的字符用重复符号{@link #getRepeatCode(int)}代替，
+     * 如"aab"发送为a、重复、b，"aaa"发送为a、重复、a；码本最多symbolCount - 3个字符。
+     * 没有相邻重复字符的文字编码结果与不转义时相同
+     * @param repeatEscape 是否转义相邻的重复字符
+     */
+    public final static boolean convertTextToCodes(String codeBook, String text, List<Integer> codes, int symbolCount, boolean repeatEscape) {
+        boolean ret = true;
+        if (repeatEscape && null != codeBook && codeBook.length() >= getRepeatCode(symbolCount)) {
+            LogHelper.e(TAG, "code book too long for repeat escape");
+            return false;
+        }
+
+        if (null != codeBook && null != text && text.length() > 0) {
+            codes.clear();
+            // 声音开始标志
+            codes.add(Common.START_TOKEN);
+            int len = text.length();
+            for (int i = 0; i < len; ++i) {
+                char ch = text.charAt(i);
+                // 找到字符在码本中的位置
+                int index = codeBook.indexOf(ch);
+                if (index > -1) {
+                	//将字符在码本中的位置存到集合中
+                    int code = index + 1;
+                    if (repeatEscape && code == codes.get(codes.size() - 1)) {
+                        code = getRepeatCode(symbolCount);
+                    }
+                    codes.add(code);
+                } else {
+                    ret = false;
+                    LogHelper.d(TAG, "invalidate char:" + ch);
+                    break;
+                }
+            }
+            if (ret) {
+            	// 声音结束标志
+                codes.add(symbolCount - 1);
+            }
+        } else {
+            ret = false;
+        }
+
+        return ret;
+    }
+
+    /**
+     * @param symbolCount 符号个数
+     * @return 转义相邻重复字符时使用的重复符号，为最后一个数据符号
+     */
+    public final static int getRepeatCode(int symbolCount) {
+        return symbolCount - 2;
+    }
+
     public final boolean isStoped() {
         return (STATE_STOPED == mState);
     }
@@ -104,20 +270,41 @@ public class Encoder implements SinGenerator.Listener, SinGenerator.Callback {
      * @param muteInterval 两段声音的间隔
      */
     public void encode(List<Integer> codes, int duration, int muteInterval) {
+        encode(codes.iterator(), duration, muteInterval);
+    }
+
+    /**
+     * 同上，每取出一个code立即生成声音，codes可以边生成边阻塞等待后续的code，用于流式发送
+     * @param codes 消息中每个字符在码本中的位置（包含起始、结尾标识），hasNext返回false时结束
+     */
+    public void encode(Iterator<Integer> codes, int duration, int muteInterval) {
         if (STATE_STOPED == mState) {
             mState = STATE_ENCODING;
+            Tracer.trace(Tracer.EVENT_ENCODE_START, duration, muteInterval);
 
             if (null != mListener) {
                 mListener.onStartEncode();
             }
 
             mSinGenerator.start();
-            for (int index : codes) {
+            while (codes.hasNext()) {
+                int index = codes.next();
                 if (STATE_ENCODING == mState) {
-                    LogHelper.d(TAG, "encode:" + index);
-                    if (index >= 0 && index < CODE_FREQUENCY.length) {
+                    Tracer.trace(Tracer.EVENT_ENCODE_SYMBOL, index, duration);
+                    if (null != mChordTable) {
+                        if (index >= 0 && index < mChordTable.getSymbolCount()) {
+                            mChordTable.getChordFrequencies(index, mChordFrequencies);
+                            int lowest = mChordFrequencies[0];
+                            for (int f : mChordFrequencies) {
+                                lowest = Math.min(lowest, f);
+                            }
+                            mSinGenerator.gen(mChordFrequencies, getDuration(index, lowest, duration));
+                        } else {
+                            LogHelper.e(TAG, "code index error");
+                        }
+                    } else if (index >= 0 && index < mFrequencies.length) {
                     	// 获取位置对应的频率，编码成字节数组
-                        mSinGenerator.gen(CODE_FREQUENCY[index], duration);
+                        mSinGenerator.gen(mFrequencies[index], getDuration(index, mFrequencies[index], duration));
                     } else {
                         LogHelper.e(TAG, "code index error");
                     }
@@ -133,6 +320,7 @@ public class Encoder implements SinGenerator.Listener, SinGenerator.Callback {
             } else {
                 LogHelper.d(TAG, "encode force stop");
             }
+            Tracer.trace(Tracer.EVENT_ENCODE_END, duration, muteInterval);
             stop();
 
             if (null != mListener) {
@@ -141,6 +329,13 @@ public class Encoder implements SinGenerator.Listener, SinGenerator.Callback {
         }
     }
 
+    private int getDuration(int index, int frequency, int duration) {
+        if (null != mSymbolTiming) {
+            return mSymbolTiming.getDuration(index, frequency);
+        }
+        return duration;
+    }
+
     public void stop() {
         if (STATE_ENCODING == mState) {
             mState = STATE_STOPED;
@@ -151,12 +346,10 @@ public class Encoder implements SinGenerator.Listener, SinGenerator.Callback {
 
     @Override
     public void onStartGen() {
-        LogHelper.d(TAG, "start gen codes");
     }
 
     @Override
     public void onStopGen() {
-        LogHelper.d(TAG, "end gen codes");
     }
 
     @Override
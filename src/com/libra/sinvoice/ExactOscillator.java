@@ -0,0 +1,43 @@
+/*
+ * Copyright (C) 2013 gujicheng
+ * 
+ * Licensed under the GPL License Version 2.0;
+ * you may not use this file except in compliance with the License.
+ * 
+ * If you have any question, please contact me.
+ * 
+ *************************************************************************
+ **                   Author information                                **
+ *************************************************************************
+ ** Email: gujicheng197@126.com                                         **
+ ** QQ   : 29600731                                                     **
+ ** Weibo: http://weibo.com/gujicheng197                                **
+ *************************************************************************
+ */
+package com.libra.sinvoice;
+
+/**
+ * 每个采样点调用Math.sin，结果与原来的生成方式完全一致
+ */
+public class ExactOscillator implements Oscillator {
+    private double mPer;
+    private double mPhase;
+
+    @Override
+    public void reset(int genRate, int sampleRate) {
+        mPer = (genRate / (double) sampleRate) * 2 * Math.PI;
+        mPhase = 0;
+    }
+
+    @Override
+    public int next(int amplitude) {
+        int out = (int) (Math.sin(mPhase) * amplitude);
+        mPhase += mPer;
+        return out;
+    }
+
+    @Override
+    public Oscillator newInstance() {
+        return new ExactOscillator();
+    }
+}
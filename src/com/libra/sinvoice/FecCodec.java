@@ -0,0 +1,406 @@
+/*
+ * Copyright (C) 2013 gujicheng
+ * 
+ * Licensed under the GPL License Version 2.0;
+ * you may not use this file except in compliance with the License.
+ * 
+ * If you have any question, please contact me.
+ * 
+ *************************************************************************
+ **                   Author information                                **
+ *************************************************************************
+ ** Email: gujicheng197@126.com                                         **
+ ** QQ   : 29600731                                                     **
+ ** Weibo: http://weibo.com/gujicheng197                                **
+ *************************************************************************
+ */
+package com.libra.sinvoice;
+
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+
+/**
+ * 前向纠错<br>
+ * 在文字转换为codes和{@link Encoder}之间加入Reed-Solomon编码，接收端在收到结束音后整体纠错，一次发送即可恢复大部分消息。
+ * <ul>
+ * <li>文字按码本位置+1编为c位(0为填充)，连成位流后按m位切成GF(2^m)的符号，后面加上2t个校验符号。
+ * 二进制数据直接作为位流，末尾加一个1位再补0，接收端去掉最后一个1及其后的0得到长度。</li>
+ * <li>当前符号表除开始、结束音外有D个数据音。接收端不会重复回调相同的音，所以采用差分编码：
+ * 每个音相对上一个音前进1 + v个位置(模D)，v为0 ~ D - 2的数字，每个数字携带b = floor(log2(D - 1))位。</li>
+ * <li>每个域符号拆成k个数字，m取b的倍数且不小于6，码字最长2^m - 1个域符号。</li>
+ * </ul>
+ * 校验符号发送前与全1异或：码字后面补0仍是合法码字，不加掩码时丢失最后一个音的假设会把第一个校验符号误当作数据。<br>
+ * 接收端把不合法的数字当作擦除；数字个数不是k的倍数或直接纠错失败时，依次假设丢失或多出了一个音，
+ * 这种情况下只接受除擦除外没有其他错误、且至少还剩MIN_CHECK_COUNT个校验符号未用的结果，避免误纠。
+ */
+public class FecCodec {
+    private final static String TAG = "FecCodec";
+
+    // 默认4个校验符号：纠正2个错误或4个擦除
+    public final static int DEFAULT_PARITY_COUNT = 4;
+    private final static int MIN_FIELD_BITS = 6;
+    // 假设丢失、多出音时至少留下的校验符号个数，用来确认假设
+    private final static int MIN_CHECK_COUNT = 2;
+    // 开始、结束音加至少3个数据音，差分后每个数字至少1位
+    private final static int MIN_SYMBOL_COUNT = 5;
+
+    private int mSymbolCount;
+    private int mDataSymbolCount;
+    private int mDigitBits;
+    private int mDigitsPerSymbol;
+    private ReedSolomon mReedSolomon;
+
+    private int mCodeword[];
+    private int mErasures[];
+    private int mLastCorrected;
+
+    public FecCodec(int symbolCount) {
+        this(symbolCount, DEFAULT_PARITY_COUNT);
+    }
+
+    /**
+     * @param symbolCount 符号个数，与{@link Encoder#getSymbolCount()}相同
+     * @param parityCount 校验符号个数
+     */
+    public FecCodec(int symbolCount, int parityCount) {
+        if (symbolCount < MIN_SYMBOL_COUNT) {
+            throw new IllegalArgumentException("too few symbols:" + symbolCount);
+        }
+        mSymbolCount = symbolCount;
+        mDataSymbolCount = symbolCount - 2;
+
+        int bits = 0;
+        while ((2 << bits) <= mDataSymbolCount - 1) {
+            ++bits;
+        }
+        mDigitBits = Math.min(bits, ReedSolomon.MAX_FIELD_BITS);
+        int fieldBits = mDigitBits;
+        while (fieldBits < MIN_FIELD_BITS) {
+            fieldBits += mDigitBits;
+        }
+        mDigitsPerSymbol = fieldBits / mDigitBits;
+        mReedSolomon = new ReedSolomon(fieldBits, parityCount);
+
+        mCodeword = new int[mReedSolomon.getMaxLength()];
+        mErasures = new int[mReedSolomon.getMaxLength()];
+        LogHelper.d(TAG, "digit bits:" + mDigitBits + " field bits:" + fieldBits + " parity:" + parityCount);
+    }
+
+    public int getSymbolCount() {
+        return mSymbolCount;
+    }
+
+    /**
+     * @return 上一次decode纠正的域符号个数(包括擦除)
+     */
+    public int getLastCorrectedCount() {
+        return mLastCorrected;
+    }
+
+    /**
+     * 将文字编码为codes，首尾加上开始、结束标志
+     * @param codeBook 码本
+     * @param text 文字，每个字符都必须在码本中
+     * @param codes 编码结果
+     * @return 是否成功，文字太长超出码字长度时失败
+     */
+    public boolean encode(String codeBook, String text, List<Integer> codes) {
+        if (null == codeBook || null == text || 0 == text.length()) {
+            return false;
+        }
+
+        int charBits = getCharBits(codeBook);
+        int fieldBits = mReedSolomon.getFieldBits();
+        int dataCount = (text.length() * charBits + fieldBits - 1) / fieldBits;
+        int length = dataCount + mReedSolomon.getParityCount();
+        if (length > mReedSolomon.getMaxLength()) {
+            LogHelper.d(TAG, "text too long:" + text.length());
+            return false;
+        }
+
+        for (int i = 0; i < dataCount; ++i) {
+            mCodeword[i] = 0;
+        }
+        int bitPos = 0;
+        for (int i = 0; i < text.length(); ++i) {
+            int index = codeBook.indexOf(text.charAt(i));
+            if (index < 0) {
+                LogHelper.d(TAG, "invalidate char:" + text.charAt(i));
+                return false;
+            }
+            bitPos = putBits(index + 1, charBits, bitPos);
+        }
+        return finishEncode(length, codes);
+    }
+
+    /**
+     * 将二进制数据编码为codes，首尾加上开始、结束标志
+     * @param data 数据，可以为空数组
+     * @param codes 编码结果
+     * @return 是否成功，数据太长超出码字长度时失败
+     */
+    public boolean encode(byte[] data, List<Integer> codes) {
+        if (null == data) {
+            return false;
+        }
+
+        int fieldBits = mReedSolomon.getFieldBits();
+        int dataCount = (data.length * 8 + 1 + fieldBits - 1) / fieldBits;
+        int length = dataCount + mReedSolomon.getParityCount();
+        if (length > mReedSolomon.getMaxLength()) {
+            LogHelper.d(TAG, "data too long:" + data.length);
+            return false;
+        }
+
+        for (int i = 0; i < dataCount; ++i) {
+            mCodeword[i] = 0;
+        }
+        int bitPos = 0;
+        for (byte b : data) {
+            bitPos = putBits(b & 0xff, 8, bitPos);
+        }
+        // 长度标志
+        putBits(1, 1, bitPos);
+        return finishEncode(length, codes);
+    }
+
+    private boolean finishEncode(int length, List<Integer> codes) {
+        mReedSolomon.encode(mCodeword, length);
+        maskParity(length);
+
+        codes.clear();
+        codes.add(Common.START_TOKEN);
+        int digitMask = (1 << mDigitBits) - 1;
+        // 虚拟的上一个音，使第一个音也按差分编码
+        int offset = mDataSymbolCount - 1;
+        for (int i = 0; i < length; ++i) {
+            for (int k = mDigitsPerSymbol - 1; k >= 0; --k) {
+                int digit = (mCodeword[i] >> (k * mDigitBits)) & digitMask;
+                offset = (offset + 1 + digit) % mDataSymbolCount;
+                codes.add(offset + 1);
+            }
+        }
+        codes.add(mSymbolCount - 1);
+        return true;
+    }
+
+    /**
+     * 纠错并还原文字
+     * @param codeBook 码本
+     * @param symbols 开始、结束标志之间收到的音(1 ~ D)
+     * @param text 还原的文字
+     * @return 是否成功
+     */
+    public boolean decode(String codeBook, List<Integer> symbols, StringBuilder text) {
+        if (null == codeBook) {
+            return false;
+        }
+        return decodeSymbols(codeBook, symbols, text, null);
+    }
+
+    /**
+     * 纠错并还原二进制数据
+     * @param symbols 开始、结束标志之间收到的音(1 ~ D)
+     * @return 数据，无法还原时返回null
+     */
+    public byte[] decode(List<Integer> symbols) {
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        if (decodeSymbols(null, symbols, null, data)) {
+            return data.toByteArray();
+        }
+        return null;
+    }
+
+    /**
+     * @param codeBook 不为null时还原为文字，否则还原为二进制数据
+     */
+    private boolean decodeSymbols(String codeBook, List<Integer> symbols, StringBuilder text, ByteArrayOutputStream data) {
+        mLastCorrected = 0;
+        if (null == symbols) {
+            return false;
+        }
+
+        int count = symbols.size();
+        int offsets[] = new int[count];
+        for (int i = 0; i < count; ++i) {
+            int s = symbols.get(i);
+            offsets[i] = (s >= 1 && s <= mDataSymbolCount) ? s - 1 : -1;
+        }
+
+        if (0 == count % mDigitsPerSymbol && tryDecode(codeBook, offsets, count, -1, false, text, data)) {
+            return true;
+        }
+
+        // 假设丢失了一个音：在每个位置插入未知的音
+        if (0 == (count + 1) % mDigitsPerSymbol) {
+            int inserted[] = new int[count + 1];
+            for (int p = 0; p <= count; ++p) {
+                System.arraycopy(offsets, 0, inserted, 0, p);
+                inserted[p] = -1;
+                System.arraycopy(offsets, p, inserted, p + 1, count - p);
+                if (tryDecode(codeBook, inserted, count + 1, p, true, text, data)) {
+                    LogHelper.d(TAG, "recovered lost symbol at " + p);
+                    return true;
+                }
+            }
+        }
+
+        // 假设多出了一个音：依次删除每个位置
+        if (count > 1 && 0 == (count - 1) % mDigitsPerSymbol) {
+            int removed[] = new int[count - 1];
+            for (int p = 0; p < count; ++p) {
+                System.arraycopy(offsets, 0, removed, 0, p);
+                System.arraycopy(offsets, p + 1, removed, p, count - 1 - p);
+                if (tryDecode(codeBook, removed, count - 1, p, true, text, data)) {
+                    LogHelper.d(TAG, "removed extra symbol at " + p);
+                    return true;
+                }
+            }
+        }
+
+        LogHelper.d(TAG, "decode failed, symbols:" + count);
+        return false;
+    }
+
+    /**
+     * @param offsets 各音的位置(0 ~ D - 1)，-1为未知
+     * @param guess 假设的插入、删除位置，-1为没有
+     * @param strict 为true时只接受没有擦除以外错误、且剩余校验符号足够的结果
+     */
+    private boolean tryDecode(String codeBook, int[] offsets, int count, int guess, boolean strict, StringBuilder text, ByteArrayOutputStream data) {
+        int length = count / mDigitsPerSymbol;
+        if (length <= mReedSolomon.getParityCount() || length > mReedSolomon.getMaxLength()) {
+            return false;
+        }
+
+        int erasureCount = 0;
+        int prev = mDataSymbolCount - 1;
+        for (int i = 0; i < length; ++i) {
+            int value = 0;
+            boolean erased = false;
+            for (int k = 0; k < mDigitsPerSymbol; ++k) {
+                int pos = i * mDigitsPerSymbol + k;
+                int cur = offsets[pos];
+                int digit = -1;
+                if (cur >= 0 && prev >= 0) {
+                    digit = (cur - prev - 1 + mDataSymbolCount) % mDataSymbolCount;
+                }
+                // 假设的位置：插入的音未知；删除位置之后的音相对的上一个音已不存在
+                if (digit < 0 || digit >= (1 << mDigitBits) || pos == guess) {
+                    erased = true;
+                }
+                value = (value << mDigitBits) | Math.max(digit, 0);
+                prev = cur;
+            }
+            if (erased) {
+                if (erasureCount >= mReedSolomon.getParityCount()) {
+                    return false;
+                }
+                mErasures[erasureCount++] = i;
+                value = 0;
+            }
+            mCodeword[i] = value;
+        }
+
+        maskParity(length);
+        if (strict && erasureCount + MIN_CHECK_COUNT > mReedSolomon.getParityCount()) {
+            return false;
+        }
+        int errors = mReedSolomon.decode(mCodeword, length, mErasures, erasureCount);
+        if (errors < 0 || (strict && errors > 0)) {
+            return false;
+        }
+
+        int dataCount = length - mReedSolomon.getParityCount();
+        if (null != codeBook) {
+            if (!unpack(codeBook, dataCount, text)) {
+                return false;
+            }
+        } else if (!unpack(dataCount, data)) {
+            return false;
+        }
+        mLastCorrected = erasureCount + errors;
+        return true;
+    }
+
+    private void maskParity(int length) {
+        int mask = (1 << mReedSolomon.getFieldBits()) - 1;
+        for (int i = length - mReedSolomon.getParityCount(); i < length; ++i) {
+            mCodeword[i] ^= mask;
+        }
+    }
+
+    private boolean unpack(String codeBook, int dataCount, StringBuilder text) {
+        int charBits = getCharBits(codeBook);
+        int totalBits = dataCount * mReedSolomon.getFieldBits();
+        int start = text.length();
+        int bitPos = 0;
+        while (bitPos + charBits <= totalBits) {
+            int value = getBits(charBits, bitPos);
+            if (0 == value) {
+                break;
+            }
+            if (value > codeBook.length()) {
+                text.setLength(start);
+                return false;
+            }
+            text.append(codeBook.charAt(value - 1));
+            bitPos += charBits;
+        }
+        // 剩余的填充位必须为0
+        for (; bitPos < totalBits; ++bitPos) {
+            if (0 != getBits(1, bitPos)) {
+                text.setLength(start);
+                return false;
+            }
+        }
+        return text.length() > start;
+    }
+
+    private boolean unpack(int dataCount, ByteArrayOutputStream data) {
+        int fieldBits = mReedSolomon.getFieldBits();
+        int totalBits = dataCount * fieldBits;
+        // 最后一个1为长度标志，之后的填充不足一个域符号
+        int flag = totalBits - 1;
+        while (flag >= 0 && 0 == getBits(1, flag)) {
+            --flag;
+        }
+        if (flag < 0 || 0 != flag % 8 || totalBits - flag > fieldBits) {
+            return false;
+        }
+        for (int bitPos = 0; bitPos < flag; bitPos += 8) {
+            data.write(getBits(8, bitPos));
+        }
+        return true;
+    }
+
+    private static int getCharBits(String codeBook) {
+        int bits = 1;
+        while ((1 << bits) <= codeBook.length()) {
+            ++bits;
+        }
+        return bits;
+    }
+
+    /**
+     * 从高位开始写入mCodeword
+     */
+    private int putBits(int value, int count, int bitPos) {
+        int fieldBits = mReedSolomon.getFieldBits();
+        for (int i = count - 1; i >= 0; --i, ++bitPos) {
+            if (0 != ((value >> i) & 1)) {
+                mCodeword[bitPos / fieldBits] |= 1 << (fieldBits - 1 - bitPos % fieldBits);
+            }
+        }
+        return bitPos;
+    }
+
+    private int getBits(int count, int bitPos) {
+        int fieldBits = mReedSolomon.getFieldBits();
+        int value = 0;
+        for (int i = 0; i < count; ++i, ++bitPos) {
+            value = (value << 1) | ((mCodeword[bitPos / fieldBits] >> (fieldBits - 1 - bitPos % fieldBits)) & 1);
+        }
+        return value;
+    }
+}
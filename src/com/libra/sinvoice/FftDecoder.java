@@ -0,0 +1,210 @@
+/*
+ * Copyright (C) 2013 gujicheng
+ * 
+ * Licensed under the GPL License Version 2.0;
+ * you may not use this file except in compliance with the License.
+ * 
+ * If you have any question, please contact me.
+ * 
+ *************************************************************************
+ **                   Author information                                **
+ *************************************************************************
+ ** Email: gujicheng197@126.com                                         **
+ ** QQ   : 29600731                                                     **
+ ** Weibo: http://weibo.com/gujicheng197                                **
+ *************************************************************************
+ */
+package com.libra.sinvoice;
+
+/**
+ * FFT频谱解码<br>
+ * 对最近mFftSize个采样点加汉宁窗做FFT，每mHopSize个采样点做一次（窗口重叠75%），
+ * 取各音所在频点的能量判决。旋转因子、窗函数、位反转表和工作数组在构造时分配，解码过程中不再分配内存。
+ * 频率分辨率为 采样率/mFftSize，可以区分比过零点计数更密集的频率表。
+ */
+public class FftDecoder implements Decoder {
+    // 窗口时长下限，ms
+    private final static int MIN_WINDOW_DURATION = 20;
+    private final static int OVERLAP = 4;
+    private final static int MIN_REG_BLOCK_COUNT = 3;
+    private final static float MIN_CONFIDENCE = 0.6f;
+    private final static float MIN_ENERGY = 0.005f;
+
+    private int mToneCount;
+    private int mSampleRate;
+    private int mFftSize;
+    private int mHopSize;
+    private int mBins[];
+
+    private float mCos[];
+    private float mSin[];
+    private float mWindow[];
+    private int mReverse[];
+    private float mRe[];
+    private float mIm[];
+    private float mPower[];
+    private float mWindowGain;
+
+    // 最近mFftSize个采样点，循环使用
+    private float mHistory[];
+    private int mHistoryPos;
+    private int mHistoryCount;
+    private int mHopCount;
+
+    private SymbolRegister mRegister;
+
+    /**
+     * @param sampleRate 采样率
+     * @param frequencies 各音的频率，第一个为开始音，最后一个为结束音
+     */
+    public FftDecoder(int sampleRate, int[] frequencies) {
+        mToneCount = frequencies.length;
+
+        mSampleRate = sampleRate;
+        int minSize = sampleRate * MIN_WINDOW_DURATION / 1000;
+        mFftSize = 1;
+        while (mFftSize < minSize) {
+            mFftSize <<= 1;
+        }
+        mHopSize = mFftSize / OVERLAP;
+
+        mBins = new int[mToneCount];
+        for (int i = 0; i < mToneCount; ++i) {
+            mBins[i] = (int) Math.round(frequencies[i] * (double) mFftSize / sampleRate);
+        }
+
+        int half = mFftSize / 2;
+        mCos = new float[half];
+        mSin = new float[half];
+        for (int i = 0; i < half; ++i) {
+            double a = -2 * Math.PI * i / mFftSize;
+            mCos[i] = (float) Math.cos(a);
+            mSin[i] = (float) Math.sin(a);
+        }
+
+        mWindow = new float[mFftSize];
+        mWindowGain = 0;
+        for (int i = 0; i < mFftSize; ++i) {
+            mWindow[i] = (float) (0.5 - 0.5 * Math.cos(2 * Math.PI * i / mFftSize));
+            mWindowGain += mWindow[i];
+        }
+
+        int bits = Integer.numberOfTrailingZeros(mFftSize);
+        mReverse = new int[mFftSize];
+        for (int i = 0; i < mFftSize; ++i) {
+            mReverse[i] = Integer.reverse(i) >>> (32 - bits);
+        }
+
+        mRe = new float[mFftSize];
+        mIm = new float[mFftSize];
+        mPower = new float[mToneCount];
+        mHistory = new float[mFftSize];
+        mRegister = new SymbolRegister(0, mToneCount - 1, MIN_REG_BLOCK_COUNT);
+
+        reset();
+    }
+
+    @Override
+    public void setListener(Decoder.Listener listener) {
+        mRegister.setListener(listener);
+    }
+
+    @Override
+    public void reset() {
+        for (int i = 0; i < mFftSize; ++i) {
+            mHistory[i] = 0;
+        }
+        mHistoryPos = 0;
+        mHistoryCount = 0;
+        mHopCount = 0;
+        mRegister.reset();
+    }
+
+    /**
+     * 汉宁窗的能量集中在窗口中间一半，中间一半落在音内即可判决；
+     * 连续MIN_REG_BLOCK_COUNT次判决，另加最多一次跳步的对齐误差
+     */
+    @Override
+    public float getMinSymbolDuration(int index, int frequency) {
+        return (mFftSize / 2 + MIN_REG_BLOCK_COUNT * mHopSize) * 1000f / mSampleRate;
+    }
+
+    @Override
+    public void process(short[] samples, int count) {
+        for (int i = 0; i < count; ++i) {
+            short sh = samples[i];
+            mHistory[mHistoryPos] = sh / 32768.0f;
+            if (++mHistoryPos >= mFftSize) {
+                mHistoryPos = 0;
+            }
+            if (mHistoryCount < mFftSize) {
+                ++mHistoryCount;
+            }
+
+            if (++mHopCount >= mHopSize) {
+                mHopCount = 0;
+                if (mHistoryCount >= mFftSize) {
+                    analyze();
+                }
+            }
+        }
+    }
+
+    private void analyze() {
+        // 从最旧的采样点开始，加窗后按位反转顺序放入工作数组
+        for (int i = 0; i < mFftSize; ++i) {
+            int pos = mHistoryPos + i;
+            if (pos >= mFftSize) {
+                pos -= mFftSize;
+            }
+            int r = mReverse[i];
+            mRe[r] = mHistory[pos] * mWindow[i];
+            mIm[r] = 0;
+        }
+
+        fft();
+
+        float total = 0;
+        int max = 0;
+        for (int t = 0; t < mToneCount; ++t) {
+            int k = mBins[t];
+            float p = mRe[k] * mRe[k] + mIm[k] * mIm[k];
+            mPower[t] = p;
+            total += p;
+            if (p > mPower[max]) {
+                max = t;
+            }
+        }
+
+        // 纯音在所在频点的幅度约为 A * 窗函数和 / 2
+        float energy = (float) (2 * Math.sqrt(mPower[max]) / mWindowGain);
+        float confidence = (total > 0) ? mPower[max] / total : 0;
+        int index = -1;
+        if (energy >= MIN_ENERGY && confidence >= MIN_CONFIDENCE) {
+            index = max;
+        }
+        mRegister.reg(index, energy, confidence);
+    }
+
+    // 原位基2 FFT，输入已按位反转顺序排列
+    private void fft() {
+        for (int len = 2; len <= mFftSize; len <<= 1) {
+            int half = len >> 1;
+            int step = mFftSize / len;
+            for (int i = 0; i < mFftSize; i += len) {
+                for (int j = 0; j < half; ++j) {
+                    float wr = mCos[j * step];
+                    float wi = mSin[j * step];
+                    int a = i + j;
+                    int b = a + half;
+                    float tr = mRe[b] * wr - mIm[b] * wi;
+                    float ti = mRe[b] * wi + mIm[b] * wr;
+                    mRe[b] = mRe[a] - tr;
+                    mIm[b] = mIm[a] - ti;
+                    mRe[a] += tr;
+                    mIm[a] += ti;
+                }
+            }
+        }
+    }
+}
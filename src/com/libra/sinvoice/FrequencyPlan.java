@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2013 gujicheng
+ * 
+ * Licensed under the GPL License Version 2.0;
+ * you may not use this file except in compliance with the License.
+ * 
+ * If you have any question, please contact me.
+ * 
+ *************************************************************************
+ **                   Author information                                **
+ *************************************************************************
+ ** Email: gujicheng197@126.com                                         **
+ ** QQ   : 29600731                                                     **
+ ** Weibo: http://weibo.com/gujicheng197                                **
+ *************************************************************************
+ */
+package com.libra.sinvoice;
+
+/**
+ * 频率规划<br>
+ * 在给定采样率和频带内生成N个等间隔的音，间隔为FREQUENCY_STEP的整数倍。
+ * FREQUENCY_STEP是{@link GoertzelDecoder}检测块(10ms)的频率分辨率，各音在检测块内都是整数个周期，互不泄漏。<br>
+ * 第一个音为开始音，最后一个音为结束音，中间N - 2个音对应码本中的字符，16、32、64个音每个音分别约4、5、6bit。<br>
+ * 过零点解码只能区分周期相差{@link ZeroCrossingDecoder#MIN_PERIOD_GAP}个采样点以上的音，适合音数少的规划，音数多时使用Goertzel或FFT解码。
+ */
+public class FrequencyPlan {
+    private final static String TAG = "FrequencyPlan";
+
+    public final static int FREQUENCY_STEP = 100;
+    public final static int DEFAULT_LOW_FREQUENCY = 1000;
+    public final static int DEFAULT_HIGH_FREQUENCY = 8000;
+    // 最高音不超过采样率的0.45倍，留出抗混叠滤波器的过渡带
+    private final static float MAX_FREQUENCY_RATIO = 0.45f;
+    // 开始音、结束音加至少一个字符
+    private final static int MIN_TONE_COUNT = 3;
+
+    private int mSampleRate;
+    private int mFrequencies[];
+
+    /**
+     * @return 该采样率下可以使用的最高音
+     */
+    public static int getMaxFrequency(int sampleRate) {
+        return (int) (sampleRate * MAX_FREQUENCY_RATIO);
+    }
+
+    /**
+     * 原有的7个音；采样率放不下最高音时(如8kHz)，改为在该采样率的频带内等间隔取7个音，
+     * 此时只能与同一采样率的另一端通信
+     */
+    public static FrequencyPlan createDefault(int sampleRate) {
+        int frequencies[] = Encoder.getCodeFrequencies();
+        if (frequencies[frequencies.length - 1] <= getMaxFrequency(sampleRate)) {
+            return new FrequencyPlan(sampleRate, frequencies);
+        }
+        LogHelper.d(TAG, "default tones exceed sampleRate:" + sampleRate);
+        return new FrequencyPlan(sampleRate, frequencies.length);
+    }
+
+    public FrequencyPlan(int sampleRate, int toneCount) {
+        this(sampleRate, toneCount, DEFAULT_LOW_FREQUENCY, DEFAULT_HIGH_FREQUENCY);
+    }
+
+    /**
+     * @param sampleRate 采样率
+     * @param toneCount 音数，包括开始、结束音
+     * @param lowFrequency 频带下限
+     * @param highFrequency 频带上限，超过采样率允许的范围时自动降低
+     */
+    public FrequencyPlan(int sampleRate, int toneCount, int lowFrequency, int highFrequency) {
+        if (toneCount < MIN_TONE_COUNT) {
+            throw new IllegalArgumentException("too few tones:" + toneCount);
+        }
+        int low = ((lowFrequency + FREQUENCY_STEP - 1) / FREQUENCY_STEP) * FREQUENCY_STEP;
+        int high = Math.min(highFrequency, getMaxFrequency(sampleRate));
+        int spacing = ((high - low) / (toneCount - 1) / FREQUENCY_STEP) * FREQUENCY_STEP;
+        if (spacing < FREQUENCY_STEP) {
+            throw new IllegalArgumentException("band too narrow for " + toneCount + " tones:" + low + "-" + high);
+        }
+
+        mSampleRate = sampleRate;
+        mFrequencies = new int[toneCount];
+        for (int i = 0; i < toneCount; ++i) {
+            mFrequencies[i] = low + i * spacing;
+        }
+        LogHelper.d(TAG, "tones:" + toneCount + " from " + low + " spacing " + spacing);
+    }
+
+    /**
+     * 自定义频率
+     * @param frequencies 第一个为开始音，最后一个为结束音
+     */
+    public FrequencyPlan(int sampleRate, int[] frequencies) {
+        if (frequencies.length < MIN_TONE_COUNT) {
+            throw new IllegalArgumentException("too few tones:" + frequencies.length);
+        }
+        for (int f : frequencies) {
+            if (f <= 0 || f * 2 >= sampleRate) {
+                throw new IllegalArgumentException("frequency out of range:" + f);
+            }
+        }
+        mSampleRate = sampleRate;
+        mFrequencies = frequencies.clone();
+    }
+
+    public int getSampleRate() {
+        return mSampleRate;
+    }
+
+    public int getToneCount() {
+        return mFrequencies.length;
+    }
+
+    /**
+     * @return 码本最多可以有的字符数
+     */
+    public int getMaxCodeBookLength() {
+        return mFrequencies.length - 2;
+    }
+
+    public int[] getFrequencies() {
+        return mFrequencies.clone();
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright (C) 2013 gujicheng
+ * 
+ * Licensed under the GPL License Version 2.0;
+ * you may not use this file except in compliance with the License.
+ * 
+ * If you have any question, please contact me.
+ * 
+ *************************************************************************
+ **                   Author information                                **
+ *************************************************************************
+ ** Email: gujicheng197@126.com                                         **
+ ** QQ   : 29600731                                                     **
+ ** Weibo: http://weibo.com/gujicheng197                                **
+ *************************************************************************
+ */
+package com.libra.sinvoice;
+
+import java.util.Arrays;
+
+/**
+ * Goertzel滤波器组解码<br>
+ * 每个音频对应一个Goertzel滤波器，在长度为BLOCK_DURATION的块上计算各频率的能量，
+ * 两组滤波器相差半个块交错运行，即每半个块得到一次判决。
+ * 每个采样点的计算量为O(音频个数)次乘法。<br>
+ * 使用{@link ChordTable}时取能量最大的K个音，按码表映射回和弦符号。
+ */
+public class GoertzelDecoder implements Decoder {
+    // ms
+    private final static int BLOCK_DURATION = 10;
+    private final static int BANK_COUNT = 2;
+    // 连续多少个块判决为同一个音才确认
+    private final static int MIN_REG_BLOCK_COUNT = 3;
+    // 最强音占所有音能量的比例
+    private final static float MIN_CONFIDENCE = 0.6f;
+    // 最强音的幅度，相对于满幅
+    private final static float MIN_ENERGY = 0.005f;
+    // 和弦中最弱的音相对最强音的能量比例，各音发送时等幅
+    private final static float MIN_CHORD_BALANCE = 0.1f;
+
+    private int mToneCount;
+    private int mSampleRate;
+    private int mBlockSize;
+    private float mCoeff[];
+    // 每组滤波器的状态，下标为 bank * mToneCount + tone
+    private float mS1[];
+    private float mS2[];
+    private int mBankCount[];
+    private float mPower[];
+
+    private ChordTable mChordTable;
+    // 能量从大到小的K个音
+    private int mTop[];
+    private int mChordTones[];
+
+    private SymbolRegister mRegister;
+
+    /**
+     * @param sampleRate 采样率
+     * @param frequencies 各音的频率，第一个为开始音，最后一个为结束音
+     */
+    public GoertzelDecoder(int sampleRate, int[] frequencies) {
+        this(sampleRate, frequencies, null);
+    }
+
+    /**
+     * 和弦解码，回调的index为码表中的符号
+     * @param sampleRate 采样率
+     * @param table 和弦码表，第一个符号为开始符号，最后一个为结束符号
+     * @throws IllegalArgumentException 码表中有超过0.45倍采样率的音
+     */
+    public GoertzelDecoder(int sampleRate, ChordTable table) {
+        this(sampleRate, checkChordTable(table, sampleRate).getFrequencies(), table);
+    }
+
+    private static ChordTable checkChordTable(ChordTable table, int sampleRate) {
+        if (!table.isSupported(sampleRate)) {
+            throw new IllegalArgumentException("chord tones exceed sampleRate:" + sampleRate);
+        }
+        return table;
+    }
+
+    private GoertzelDecoder(int sampleRate, int[] frequencies, ChordTable table) {
+        mToneCount = frequencies.length;
+        mSampleRate = sampleRate;
+        mBlockSize = sampleRate * BLOCK_DURATION / 1000;
+
+        mCoeff = new float[mToneCount];
+        for (int i = 0; i < mToneCount; ++i) {
+            mCoeff[i] = (float) (2 * Math.cos(2 * Math.PI * frequencies[i] / sampleRate));
+        }
+        mS1 = new float[BANK_COUNT * mToneCount];
+        mS2 = new float[BANK_COUNT * mToneCount];
+        mBankCount = new int[BANK_COUNT];
+        mPower = new float[mToneCount];
+        if (null != table) {
+            mChordTable = table;
+            mTop = new int[table.getTonesPerSymbol()];
+            mChordTones = new int[table.getTonesPerSymbol()];
+            mRegister = new SymbolRegister(0, table.getSymbolCount() - 1, MIN_REG_BLOCK_COUNT);
+        } else {
+            mRegister = new SymbolRegister(0, mToneCount - 1, MIN_REG_BLOCK_COUNT);
+        }
+
+        reset();
+    }
+
+    @Override
+    public void setListener(Decoder.Listener listener) {
+        mRegister.setListener(listener);
+    }
+
+    @Override
+    public void reset() {
+        for (int i = 0; i < mS1.length; ++i) {
+            mS1[i] = 0;
+            mS2[i] = 0;
+        }
+        // 第二组滤波器晚半个块开始
+        for (int b = 0; b < BANK_COUNT; ++b) {
+            mBankCount[b] = -b * mBlockSize / BANK_COUNT;
+        }
+        mRegister.reset();
+    }
+
+    /**
+     * 连续MIN_REG_BLOCK_COUNT个块完整落在音内，相邻块相差半个块，另加最多半个块的对齐误差，与频率无关
+     */
+    @Override
+    public float getMinSymbolDuration(int index, int frequency) {
+        int hop = mBlockSize / BANK_COUNT;
+        return (mBlockSize + MIN_REG_BLOCK_COUNT * hop) * 1000f / mSampleRate;
+    }
+
+    @Override
+    public void process(short[] samples, int count) {
+        for (int i = 0; i < count; ++i) {
+            short sh = samples[i];
+            float x = sh / 32768.0f;
+
+            for (int b = 0; b < BANK_COUNT; ++b) {
+                if (mBankCount[b]++ < 0) {
+                    continue;
+                }
+
+                int base = b * mToneCount;
+                for (int t = 0; t < mToneCount; ++t) {
+                    int k = base + t;
+                    float s = x + mCoeff[t] * mS1[k] - mS2[k];
+                    mS2[k] = mS1[k];
+                    mS1[k] = s;
+                }
+
+                if (mBankCount[b] >= mBlockSize) {
+                    evaluate(base);
+                    mBankCount[b] = 0;
+                }
+            }
+        }
+    }
+
+    private void evaluate(int base) {
+        float total = 0;
+        int max = 0;
+        for (int t = 0; t < mToneCount; ++t) {
+            int k = base + t;
+            float p = mS1[k] * mS1[k] + mS2[k] * mS2[k] - mCoeff[t] * mS1[k] * mS2[k];
+            mPower[t] = p;
+            total += p;
+            if (p > mPower[max]) {
+                max = t;
+            }
+            mS1[k] = 0;
+            mS2[k] = 0;
+        }
+
+        if (null != mChordTable) {
+            evaluateChord(total);
+            return;
+        }
+
+        // 纯音的Goertzel能量约为(A * N / 2)^2
+        float energy = (float) (2 * Math.sqrt(mPower[max]) / mBlockSize);
+        float confidence = (total > 0) ? mPower[max] / total : 0;
+        int index = -1;
+        if (energy >= MIN_ENERGY && confidence >= MIN_CONFIDENCE) {
+            index = max;
+        }
+        mRegister.reg(index, energy, confidence);
+    }
+
+    private void evaluateChord(float total) {
+        int count = mTop.length;
+        // 插入排序选出能量最大的count个音
+        int found = 0;
+        for (int t = 0; t < mToneCount; ++t) {
+            int pos = found;
+            while (pos > 0 && mPower[t] > mPower[mTop[pos - 1]]) {
+                if (pos < count) {
+                    mTop[pos] = mTop[pos - 1];
+                }
+                --pos;
+            }
+            if (pos < count) {
+                mTop[pos] = t;
+                if (found < count) {
+                    ++found;
+                }
+            }
+        }
+
+        float chordPower = 0;
+        for (int k = 0; k < count; ++k) {
+            chordPower += mPower[mTop[k]];
+        }
+        float weakest = mPower[mTop[count - 1]];
+        float energy = (float) (2 * Math.sqrt(weakest) / mBlockSize);
+        float confidence = (total > 0) ? chordPower / total : 0;
+        int index = -1;
+        if (energy >= MIN_ENERGY && confidence >= MIN_CONFIDENCE && weakest >= MIN_CHORD_BALANCE * mPower[mTop[0]]) {
+            System.arraycopy(mTop, 0, mChordTones, 0, count);
+            Arrays.sort(mChordTones);
+            index = mChordTable.getSymbol(mChordTones);
+        }
+        mRegister.reg(index, energy, confidence);
+    }
+}
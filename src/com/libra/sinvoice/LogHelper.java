@@ -20,9 +20,48 @@ import android.util.Log;
 
 public class LogHelper {
     private static final String ROOT_TAG = "SinVoice";
+    // 不在Android上运行时（如服务器端离线生成音频），只把错误输出到标准错误
+    private static final boolean HAS_ANDROID_LOG = hasAndroidLog();
+
+    // 级别与android.util.Log相同，低于sLevel的日志在拼接tag之前就返回
+    public static final int LEVEL_VERBOSE = 2;
+    public static final int LEVEL_DEBUG = 3;
+    public static final int LEVEL_INFO = 4;
+    public static final int LEVEL_ERROR = 6;
+    public static final int LEVEL_NONE = 7;
+
+    private static volatile int sLevel = LEVEL_DEBUG;
+
+    private static boolean hasAndroidLog() {
+        try {
+            Class.forName("android.util.Log");
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 设置输出日志的最低级别，如发布时设为LEVEL_ERROR
+     * @param level LEVEL_*
+     */
+    public static void setLevel(int level) {
+        sLevel = level;
+    }
+
+    public static boolean isLoggable(int level) {
+        return HAS_ANDROID_LOG && level >= sLevel;
+    }
+
+    private static String tag(String classTag, String privateTag) {
+        return ROOT_TAG + " " + classTag + " " + privateTag;
+    }
 
     public static final int d(String classTag, String privateTag, String msg) {
-        return Log.d(String.format("%s %s %s", ROOT_TAG, classTag, privateTag), msg);
+        if (!isLoggable(LEVEL_DEBUG)) {
+            return 0;
+        }
+        return Log.d(tag(classTag, privateTag), msg);
     }
 
     public static final int d(String classTag, String msg) {
@@ -30,7 +69,10 @@ public class LogHelper {
     }
 
     public static final int i(String classTag, String privateTag, String msg) {
-        return Log.i(String.format("%s %s %s", ROOT_TAG, classTag, privateTag), msg);
+        if (!isLoggable(LEVEL_INFO)) {
+            return 0;
+        }
+        return Log.i(tag(classTag, privateTag), msg);
     }
 
     public static final int i(String classTag, String msg) {
@@ -38,7 +80,14 @@ public class LogHelper {
     }
 
     public static final int e(String classTag, String privateTag, String msg) {
-        return Log.e(String.format("%s %s %s", ROOT_TAG, classTag, privateTag), msg);
+        if (LEVEL_ERROR < sLevel) {
+            return 0;
+        }
+        if (!HAS_ANDROID_LOG) {
+            System.err.println(tag(classTag, privateTag) + ": " + msg);
+            return 0;
+        }
+        return Log.e(tag(classTag, privateTag), msg);
     }
 
     public static final int e(String classTag, String msg) {
@@ -46,7 +95,10 @@ public class LogHelper {
     }
 
     public static final int v(String classTag, String privateTag, String msg) {
-        return Log.v(String.format("%s %s %s", ROOT_TAG, classTag, privateTag), msg);
+        if (!isLoggable(LEVEL_VERBOSE)) {
+            return 0;
+        }
+        return Log.v(tag(classTag, privateTag), msg);
     }
 
     public static final int v(String classTag, String msg) {
@@ -0,0 +1,196 @@
+/*
+ * Copyright (C) 2013 gujicheng
+ * 
+ * Licensed under the GPL License Version 2.0;
+ * you may not use this file except in compliance with the License.
+ * 
+ * If you have any question, please contact me.
+ * 
+ *************************************************************************
+ **                   Author information                                **
+ *************************************************************************
+ ** Email: gujicheng197@126.com                                         **
+ ** QQ   : 29600731                                                     **
+ ** Weibo: http://weibo.com/gujicheng197                                **
+ *************************************************************************
+ */
+package com.libra.sinvoice;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+
+import com.libra.sinvoice.Buffer.BufferData;
+
+/**
+ * 进程内的回环音频<br>
+ * 写入{@link #getSink()}的PCM数据放入环形缓冲区，由{@link #getSource()}读出，
+ * 可以让SinVoicePlayer直接驱动SinVoiceRecognition，在普通JVM上测量端到端的吞吐量和延迟。
+ * 不按实时速度等待；接收端打开时缓冲区满则写入等待，接收端没有打开时数据直接丢弃，就像没人听的扬声器。
+ */
+public class LoopbackAudio {
+    private final static String TAG = "LoopbackAudio";
+    // 读取没有数据时最多等待的时间，Record借此检查是否已停止
+    private final static long READ_WAIT_MS = 20;
+
+    private final byte mRing[];
+    // 按小端解释mRing的16位采样视图，读入采样点数组时使用
+    private final ShortBuffer mRingSamples;
+    // 每个采样点的字节数，读取时按它对齐
+    private final int mBytesPerSample;
+    private int mReadPos;
+    private int mCount;
+    private boolean mSourceOpened;
+    private long mWrittenBytes;
+
+    private final AudioSink mSink = new AudioSink() {
+        @Override
+        public boolean open() {
+            return true;
+        }
+
+        @Override
+        public int write(BufferData data) {
+            return LoopbackAudio.this.write(data);
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+
+    private final AudioSource mSource = new AudioSource() {
+        @Override
+        public boolean open() {
+            synchronized (LoopbackAudio.this) {
+                mSourceOpened = true;
+                mReadPos = 0;
+                mCount = 0;
+            }
+            return true;
+        }
+
+        @Override
+        public int read(BufferData data, int size) {
+            return LoopbackAudio.this.read(data, size);
+        }
+
+        @Override
+        public void close() {
+            synchronized (LoopbackAudio.this) {
+                mSourceOpened = false;
+                LoopbackAudio.this.notifyAll();
+            }
+        }
+    };
+
+    /**
+     * 传递16位数据
+     * @param capacity 环形缓冲区的字节数
+     */
+    public LoopbackAudio(int capacity) {
+        this(capacity, Record.BITS_16);
+    }
+
+    /**
+     * @param capacity 环形缓冲区的字节数
+     * @param bits Record.BITS_8 或 Record.BITS_16，与接收端相同
+     */
+    public LoopbackAudio(int capacity, int bits) {
+        mBytesPerSample = (Record.BITS_8 == bits) ? 1 : 2;
+        // 取偶数，读写时采样点不会被环的首尾分开
+        mRing = new byte[capacity & ~1];
+        mRingSamples = ByteBuffer.wrap(mRing).order(ByteOrder.LITTLE_ENDIAN).asShortBuffer();
+    }
+
+    public AudioSink getSink() {
+        return mSink;
+    }
+
+    public AudioSource getSource() {
+        return mSource;
+    }
+
+    /**
+     * @return 写入的总字节数，包括接收端没有打开时丢弃的
+     */
+    public synchronized long getWrittenBytes() {
+        return mWrittenBytes;
+    }
+
+    private synchronized int write(BufferData data) {
+        int size = data.getFilledSize();
+        int offset = 0;
+        try {
+            while (offset < size && mSourceOpened) {
+                if (mCount == mRing.length) {
+                    wait();
+                    continue;
+                }
+
+                int writePos = (mReadPos + mCount) % mRing.length;
+                int len = Math.min(size - offset, Math.min(mRing.length - mCount, mRing.length - writePos));
+                System.arraycopy(data.mData, offset, mRing, writePos, len);
+                mCount += len;
+                offset += len;
+                notifyAll();
+            }
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+            LogHelper.e(TAG, "write interrupted");
+            return -1;
+        }
+        mWrittenBytes += size;
+        return size;
+    }
+
+    private synchronized int read(BufferData data, int size) {
+        try {
+            if (0 == mCount && mSourceOpened) {
+                wait(READ_WAIT_MS);
+            }
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+            LogHelper.e(TAG, "read interrupted");
+            return -1;
+        }
+
+        // 保持采样点对齐
+        int len = Math.min(size, mCount);
+        len -= len % mBytesPerSample;
+        int offset = 0;
+        while (offset < len) {
+            int n = Math.min(len - offset, mRing.length - mReadPos);
+            if (null != data.mSamples) {
+                mRingSamples.position(mReadPos / 2);
+                mRingSamples.get(data.mSamples, offset / 2, n / 2);
+            } else if (data.isDirect()) {
+                readDirect(data.getByteBuffer(), offset, n);
+            } else {
+                System.arraycopy(mRing, mReadPos, data.mData, offset, n);
+            }
+            mReadPos = (mReadPos + n) % mRing.length;
+            mCount -= n;
+            offset += n;
+        }
+        if (len > 0) {
+            notifyAll();
+        }
+        return len;
+    }
+
+    /**
+     * 与AudioRecord相同，直接内存按本地字节序写入
+     */
+    private void readDirect(ByteBuffer dst, int offset, int n) {
+        if (2 == mBytesPerSample && ByteOrder.BIG_ENDIAN == dst.order()) {
+            for (int i = 0; i < n; i += 2) {
+                dst.putShort(offset + i, mRingSamples.get((mReadPos + i) / 2));
+            }
+        } else {
+            dst.position(offset);
+            dst.put(mRing, mReadPos, n);
+            dst.position(0);
+        }
+    }
+}
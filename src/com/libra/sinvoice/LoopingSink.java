@@ -0,0 +1,37 @@
+/*
+ * Copyright (C) 2013 gujicheng
+ * 
+ * Licensed under the GPL License Version 2.0;
+ * you may not use this file except in compliance with the License.
+ * 
+ * If you have any question, please contact me.
+ * 
+ *************************************************************************
+ **                   Author information                                **
+ *************************************************************************
+ ** Email: gujicheng197@126.com                                         **
+ ** QQ   : 29600731                                                     **
+ ** Weibo: http://weibo.com/gujicheng197                                **
+ *************************************************************************
+ */
+package com.libra.sinvoice;
+
+/**
+ * 可以自己循环播放一段数据的声音输出，如{@link AudioTrackSink}<br>
+ * 循环时不再需要PcmPlayer和编码线程不断地写入数据
+ */
+public interface LoopingSink extends AudioSink {
+    /**
+     * 开始循环播放一段数据；正在循环时，在当前这一遍播完后换成新的数据
+     * @param pcm 一遍的数据，通常是一条消息加上结尾的静音
+     * @return 是否成功
+     */
+    boolean loop(byte[] pcm);
+
+    /**
+     * 停止循环
+     */
+    void stopLoop();
+
+    boolean isLooping();
+}
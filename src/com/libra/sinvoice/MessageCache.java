@@ -0,0 +1,182 @@
+/*
+ * Copyright (C) 2013 gujicheng
+ * 
+ * Licensed under the GPL License Version 2.0;
+ * you may not use this file except in compliance with the License.
+ * 
+ * If you have any question, please contact me.
+ * 
+ *************************************************************************
+ **                   Author information                                **
+ *************************************************************************
+ ** Email: gujicheng197@126.com                                         **
+ ** QQ   : 29600731                                                     **
+ ** Weibo: http://weibo.com/gujicheng197                                **
+ *************************************************************************
+ */
+package com.libra.sinvoice;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 整条消息的PCM缓存<br>
+ * 同一条消息(编码结果、频率、和弦码表、时长、静音间隔、采样率、位深都相同)只经过Encoder生成一次，
+ * 之后SinVoicePlayer直接把缓存的数据交给PcmPlayer播放。<br>
+ * 码本、文字、前向纠错等都已体现在编码结果中，不需要单独作为键。
+ * 缓存总字节数受mMaxBytes限制，超出时淘汰最久未使用的消息。
+ */
+public class MessageCache {
+    private final static String TAG = "MessageCache";
+
+    public final static int DEFAULT_MAX_BYTES = 2 * 1024 * 1024;
+
+    private static MessageCache sDefaultCache;
+
+    private LinkedHashMap<Key, byte[]> mMessages;
+    private int mMaxBytes;
+    private int mUsedBytes;
+    private int mHitCount;
+    private int mMissCount;
+
+    private final static class Key {
+        private final List<Integer> mCodes;
+        private final int mFrequencies[];
+        private final ChordTable mChordTable;
+        private final SymbolTiming mSymbolTiming;
+        private final int mSampleRate;
+        private final int mBits;
+        private final int mDuration;
+        private final int mMuteInterval;
+
+        public Key(List<Integer> codes, Encoder encoder, int duration, int muteInterval) {
+            mCodes = new ArrayList<Integer>(codes);
+            mFrequencies = encoder.getFrequencies();
+            mChordTable = encoder.getChordTable();
+            mSymbolTiming = encoder.getSymbolTiming();
+            mSampleRate = encoder.getSampleRate();
+            mBits = encoder.getBits();
+            mDuration = duration;
+            mMuteInterval = muteInterval;
+        }
+
+        @Override
+        public int hashCode() {
+            int h = mCodes.hashCode();
+            h = 31 * h + Arrays.hashCode(mFrequencies);
+            h = 31 * h + System.identityHashCode(mChordTable);
+            h = 31 * h + System.identityHashCode(mSymbolTiming);
+            h = 31 * h + mSampleRate;
+            h = 31 * h + mBits;
+            h = 31 * h + mDuration;
+            h = 31 * h + mMuteInterval;
+            return h;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key k = (Key) o;
+            return mCodes.equals(k.mCodes) && Arrays.equals(mFrequencies, k.mFrequencies) && mChordTable == k.mChordTable
+                    && mSymbolTiming == k.mSymbolTiming && mSampleRate == k.mSampleRate && mBits == k.mBits
+                    && mDuration == k.mDuration && mMuteInterval == k.mMuteInterval;
+        }
+    }
+
+    /**
+     * 所有SinVoicePlayer可以共用的缓存
+     */
+    public static synchronized MessageCache getDefault() {
+        if (null == sDefaultCache) {
+            sDefaultCache = new MessageCache(DEFAULT_MAX_BYTES);
+        }
+        return sDefaultCache;
+    }
+
+    /**
+     * @param maxBytes 缓存占用的最大字节数
+     */
+    public MessageCache(int maxBytes) {
+        mMaxBytes = maxBytes;
+        mUsedBytes = 0;
+        // accessOrder为true，迭代顺序即最久未使用在前
+        mMessages = new LinkedHashMap<Key, byte[]>(16, 0.75f, true);
+    }
+
+    /**
+     * 获取一条消息的PCM数据<br>
+     * 返回的数组被缓存共享，调用者不能修改
+     * @param codes 编码结果，见{@link Encoder#encode(List, int, int)}
+     * @param encoder 生成消息使用的Encoder，取其频率、和弦码表等设置
+     * @return 没有缓存时返回null
+     */
+    public synchronized byte[] get(List<Integer> codes, Encoder encoder, int duration, int muteInterval) {
+        byte[] pcm = mMessages.get(new Key(codes, encoder, duration, muteInterval));
+        if (null != pcm) {
+            ++mHitCount;
+        } else {
+            ++mMissCount;
+        }
+        return pcm;
+    }
+
+    /**
+     * 缓存一条消息的PCM数据，超过最大字节数的消息不缓存
+     * @param pcm 完整的消息，包括结尾的静音，放入后调用者不能修改
+     */
+    public synchronized void put(List<Integer> codes, Encoder encoder, int duration, int muteInterval, byte[] pcm) {
+        if (pcm.length > mMaxBytes) {
+            LogHelper.d(TAG, "message too large to cache:" + pcm.length);
+            return;
+        }
+        byte[] old = mMessages.put(new Key(codes, encoder, duration, muteInterval), pcm);
+        if (null != old) {
+            mUsedBytes -= old.length;
+        }
+        mUsedBytes += pcm.length;
+        trim();
+    }
+
+    public synchronized void setMaxBytes(int maxBytes) {
+        mMaxBytes = maxBytes;
+        trim();
+    }
+
+    public synchronized int getMaxBytes() {
+        return mMaxBytes;
+    }
+
+    public synchronized void clear() {
+        mMessages.clear();
+        mUsedBytes = 0;
+    }
+
+    public synchronized int getUsedBytes() {
+        return mUsedBytes;
+    }
+
+    public synchronized int getHitCount() {
+        return mHitCount;
+    }
+
+    public synchronized int getMissCount() {
+        return mMissCount;
+    }
+
+    private void trim() {
+        Iterator<Map.Entry<Key, byte[]>> it = mMessages.entrySet().iterator();
+        while (mUsedBytes > mMaxBytes && it.hasNext()) {
+            mUsedBytes -= it.next().getValue().length;
+            it.remove();
+        }
+    }
+}
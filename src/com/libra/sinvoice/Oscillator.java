@@ -0,0 +1,44 @@
+/*
+ * Copyright (C) 2013 gujicheng
+ * 
+ * Licensed under the GPL License Version 2.0;
+ * you may not use this file except in compliance with the License.
+ * 
+ * If you have any question, please contact me.
+ * 
+ *************************************************************************
+ **                   Author information                                **
+ *************************************************************************
+ ** Email: gujicheng197@126.com                                         **
+ ** QQ   : 29600731                                                     **
+ ** Weibo: http://weibo.com/gujicheng197                                **
+ *************************************************************************
+ */
+package com.libra.sinvoice;
+
+/**
+ * 音波振荡器<br>
+ * SinGenerator通过它逐点取得正弦采样值，可以在精确计算和快速查表之间切换。
+ * 实现类需保证next()不分配内存。
+ */
+public interface Oscillator {
+    /**
+     * 开始一段新的音波，相位归零
+     * @param genRate 音波频率，0为静音
+     * @param sampleRate 采样率
+     */
+    void reset(int genRate, int sampleRate);
+
+    /**
+     * 取下一个采样点
+     * @param amplitude 振幅，BITS_8时为64，BITS_16时为16384
+     * @return 范围为[-amplitude, amplitude]的整数采样值
+     */
+    int next(int amplitude);
+
+    /**
+     * 创建一个同类型、状态独立的振荡器，用于和弦中的其他音
+     * @return 新的振荡器，需reset后使用
+     */
+    Oscillator newInstance();
+}
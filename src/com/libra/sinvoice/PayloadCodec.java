@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2013 gujicheng
+ * 
+ * Licensed under the GPL License Version 2.0;
+ * you may not use this file except in compliance with the License.
+ * 
+ * If you have any question, please contact me.
+ * 
+ *************************************************************************
+ **                   Author information                                **
+ *************************************************************************
+ ** Email: gujicheng197@126.com                                         **
+ ** QQ   : 29600731                                                     **
+ ** Weibo: http://weibo.com/gujicheng197                                **
+ *************************************************************************
+ */
+package com.libra.sinvoice;
+
+import java.math.BigInteger;
+import java.util.List;
+
+/**
+ * 二进制数据编码<br>
+ * 整段数据看作一个大整数，最高位前加一个1作为长度标志，再转换为D - 1进制的数字(D为开始、结束音以外的数据音个数)，
+ * 与{@link FecCodec}一样按差分编码发送，相邻的音不会相同。每个音携带log2(D - 1)位，
+ * 默认7个音时每字节4个音，64个音时每字节约1.4个音。
+ */
+public class PayloadCodec {
+    private final static String TAG = "PayloadCodec";
+
+    // 开始、结束音加至少3个数据音
+    private final static int MIN_SYMBOL_COUNT = 5;
+
+    private int mSymbolCount;
+    private int mDataSymbolCount;
+    private BigInteger mBase;
+
+    /**
+     * @param symbolCount 符号个数，与{@link Encoder#getSymbolCount()}相同
+     */
+    public PayloadCodec(int symbolCount) {
+        if (symbolCount < MIN_SYMBOL_COUNT) {
+            throw new IllegalArgumentException("too few symbols:" + symbolCount);
+        }
+        mSymbolCount = symbolCount;
+        mDataSymbolCount = symbolCount - 2;
+        mBase = BigInteger.valueOf(mDataSymbolCount - 1);
+    }
+
+    public int getSymbolCount() {
+        return mSymbolCount;
+    }
+
+    /**
+     * @param data 数据，可以为空数组
+     * @param codes 编码结果，首尾为开始、结束标志
+     * @return 是否成功
+     */
+    public boolean encode(byte[] data, List<Integer> codes) {
+        if (null == data) {
+            return false;
+        }
+
+        BigInteger value = new BigInteger(1, data).setBit(8 * data.length);
+        // 从低位开始取出各位数字
+        int digitCount = 0;
+        // 进制不小于2，位数不超过二进制位数
+        int digits[] = new int[value.bitLength()];
+        while (value.signum() > 0) {
+            BigInteger[] qr = value.divideAndRemainder(mBase);
+            digits[digitCount++] = qr[1].intValue();
+            value = qr[0];
+        }
+
+        codes.clear();
+        codes.add(Common.START_TOKEN);
+        int offset = mDataSymbolCount - 1;
+        for (int i = digitCount - 1; i >= 0; --i) {
+            offset = (offset + 1 + digits[i]) % mDataSymbolCount;
+            codes.add(offset + 1);
+        }
+        codes.add(mSymbolCount - 1);
+        return true;
+    }
+
+    /**
+     * @param symbols 开始、结束标志之间收到的音
+     * @return 数据，无法还原时返回null
+     */
+    public byte[] decode(List<Integer> symbols) {
+        BigInteger value = BigInteger.ZERO;
+        int prev = mDataSymbolCount - 1;
+        for (int s : symbols) {
+            if (s < 1 || s > mDataSymbolCount) {
+                LogHelper.d(TAG, "invalid symbol:" + s);
+                return null;
+            }
+            int cur = s - 1;
+            int digit = (cur - prev - 1 + mDataSymbolCount) % mDataSymbolCount;
+            if (digit >= mDataSymbolCount - 1) {
+                LogHelper.d(TAG, "repeated symbol:" + s);
+                return null;
+            }
+            value = value.multiply(mBase).add(BigInteger.valueOf(digit));
+            prev = cur;
+        }
+
+        // 最高位为长度标志
+        int bits = value.bitLength() - 1;
+        if (bits < 0 || 0 != bits % 8) {
+            LogHelper.d(TAG, "invalid length bits:" + bits);
+            return null;
+        }
+        byte raw[] = value.clearBit(bits).toByteArray();
+        byte data[] = new byte[bits / 8];
+        // toByteArray去掉了前导0，可能还多一个符号字节
+        int copy = Math.min(raw.length, data.length);
+        System.arraycopy(raw, raw.length - copy, data, data.length - copy, copy);
+        return data;
+    }
+}
@@ -16,12 +16,9 @@
  */
 package com.libra.sinvoice;
 
-import android.media.AudioManager;
-import android.media.AudioTrack;
-
 import com.libra.sinvoice.Buffer.BufferData;
 /**
- * 
+ * 从队列中取出编码好的数据，写入{@link AudioSink}播放
  */
 public class PcmPlayer {
     private final static String TAG = "PcmPlayer";
@@ -29,15 +26,21 @@ public class PcmPlayer {
     private final static int STATE_STOP = 2;
 
     private int mState;
-    private AudioTrack mAudio;
-    private long mPlayedLen;
+    private AudioSink mSink;
     private Listener mListener;
     private Callback mCallback;
+    private SinVoiceMetrics mMetrics;
+    private long mBytesPerSecond;
 
     public static interface Listener {
         void onPlayStart();
 
         void onPlayStop();
+
+        /**
+         * 声音输出打开失败，之后队列中的数据会被丢弃直到结束标志，不会再调用onPlayStart、onPlayStop
+         */
+        void onPlayError();
     }
 
     public static interface Callback {
@@ -54,52 +57,63 @@ public class PcmPlayer {
     }
 
     /**
-     * 
+     * 使用AudioTrack播放
      * @param callback
      * @param sampleRate 设置音频数据的采样率
      * @param channel 设置输出声道,AudioFormat.CHANNEL_OUT_STERE双声道，AudioFormat.CHANNEL_OUT_MONO单声道
      * @param format 设置音频数据块是8位还是16位
      * @param bufferSize
-     * http://blog.chinaunix.net/uid-20546441-id-1645702.html
+     * @see AudioTrackSink
      */
     public PcmPlayer(Callback callback, int sampleRate, int channel, int format, int bufferSize) {
+        this(callback, new AudioTrackSink(sampleRate, channel, format, bufferSize));
+    }
+
+    /**
+     * @param callback
+     * @param sink 声音输出
+     */
+    public PcmPlayer(Callback callback, AudioSink sink) {
         mCallback = callback;
-        bufferSize = Math.max(AudioTrack.getMinBufferSize(sampleRate, channel, format), bufferSize);
-        // 最后一个参数表示，已流的形式播放，即一部分一部分的播放
-        mAudio = new AudioTrack(AudioManager.STREAM_MUSIC, sampleRate, channel, format, bufferSize, AudioTrack.MODE_STREAM);
+        mSink = sink;
         mState = STATE_STOP;
-        mPlayedLen = 0;
     }
 
     public void setListener(Listener listener) {
         mListener = listener;
     }
 
+    /**
+     * 记录写入AudioSink的时间，写入时间超过数据时长两倍时记为一次卡顿；为null时不记录
+     * @param metrics
+     * @param bytesPerSecond 每秒的数据字节数，用于计算数据时长
+     */
+    public void setMetrics(SinVoiceMetrics metrics, int bytesPerSecond) {
+        mMetrics = metrics;
+        mBytesPerSecond = bytesPerSecond;
+    }
+
     public void start() {
         LogHelper.d(TAG, "start");
-        if (STATE_STOP == mState && null != mAudio) {
-            mPlayedLen = 0;
-
-            if (null != mCallback) {
+        if (STATE_STOP == mState && null != mSink && null != mCallback) {
+            if (mSink.open()) {
                 mState = STATE_START;
                 LogHelper.d(TAG, "start");
                 if (null != mListener) {
                     mListener.onPlayStart();
                 }
                 while (STATE_START == mState) {
-                    LogHelper.d(TAG, "start getbuffer");
                     // 从消费队列中取出一个
                     BufferData data = mCallback.getPlayBuffer();
                     if (null != data) {
-                        if (null != data.mData) {
-                            int len = mAudio.write(data.mData, 0, data.getFilledSize());
-
-                            if (0 == mPlayedLen) {
-                                mAudio.play();
-                            }
-                            mPlayedLen += len;
+                        if (!data.isEndOfInput()) {
+                            int len = write(data);
+                            Tracer.trace(Tracer.EVENT_PLAY_BUFFER, data.getFilledSize(), len);
                             // 将消费的这条添加到生产队列中
                             mCallback.freePlayData(data);
+                            if (len < 0) {
+                                LogHelper.e(TAG, "write sink error:" + len);
+                            }
                         } else {
                             // it is the end of input, so need stop
                             LogHelper.d(TAG, "it is the end of input, so need stop");
@@ -111,23 +125,89 @@ public class PcmPlayer {
                     }
                 }
 
-                if (null != mAudio) {
-                    mAudio.pause();
-                    mAudio.flush();
-                    mAudio.stop();
-                }
+                mSink.close();
                 mState = STATE_STOP;
                 if (null != mListener) {
                     mListener.onPlayStop();
                 }
                 LogHelper.d(TAG, "end");
+            } else {
+                LogHelper.e(TAG, "open sink failed");
+                if (null != mListener) {
+                    mListener.onPlayError();
+                }
+                drain();
             }
         }
     }
 
+    /**
+     * 丢弃队列中的数据直到结束标志，避免生产者一直等待空的缓冲区
+     */
+    private void drain() {
+        while (true) {
+            BufferData data = mCallback.getPlayBuffer();
+            if (null == data || data.isEndOfInput()) {
+                break;
+            }
+            mCallback.freePlayData(data);
+        }
+    }
+
     public void stop() {
-        if (STATE_START == mState && null != mAudio) {
+        if (STATE_START == mState) {
             mState = STATE_STOP;
         }
     }
+
+    private int write(BufferData data) {
+        SinVoiceMetrics metrics = mMetrics;
+        if (null == metrics) {
+            return mSink.write(data);
+        }
+        long start = System.nanoTime();
+        int len = mSink.write(data);
+        long nanos = System.nanoTime() - start;
+        metrics.getSinkWriteNanos().record(nanos);
+        if (mBytesPerSecond > 0 && nanos > 2 * data.getFilledSize() * 1000000000L / mBytesPerSecond) {
+            metrics.getWriteStalls().inc();
+        }
+        return len;
+    }
+
+    /**
+     * @return 声音输出是否支持{@link #loop(byte[])}
+     */
+    public boolean canLoop() {
+        return mSink instanceof LoopingSink;
+    }
+
+    /**
+     * 循环播放一段数据，不经过队列，也不占用线程；已在循环时在当前这一遍播完后换成新的数据<br>
+     * 不能与{@link #start()}同时使用
+     * @param pcm 一遍的数据
+     * @return 是否成功，声音输出不支持循环时返回false
+     */
+    public boolean loop(byte[] pcm) {
+        if (STATE_STOP == mState && canLoop()) {
+            LoopingSink sink = (LoopingSink) mSink;
+            boolean looping = sink.isLooping();
+            if (sink.loop(pcm)) {
+                if (!looping && null != mListener) {
+                    mListener.onPlayStart();
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public void stopLoop() {
+        if (canLoop() && ((LoopingSink) mSink).isLooping()) {
+            ((LoopingSink) mSink).stopLoop();
+            if (null != mListener) {
+                mListener.onPlayStop();
+            }
+        }
+    }
 }
@@ -16,14 +16,10 @@
  */
 package com.libra.sinvoice;
 
-import android.media.AudioFormat;
-import android.media.AudioRecord;
-import android.media.MediaRecorder;
-
 import com.libra.sinvoice.Buffer.BufferData;
 /**
  * 收集声音类<br>
- * <p>将声音转换为字符编码，放到队列中</p> 
+ * <p>从{@link AudioSource}读取声音数据，放到队列中</p> 
  */
 public class Record {
     private final static String TAG = "Record";
@@ -38,13 +34,8 @@ public class Record {
 
     private int mState;
 
-    private int mFrequence = 8000;
-    private int mChannel = CHANNEL_1;
-    private int mBits = BITS_8;
     private int mBufferSize;
-
-    private int mChannelConfig = AudioFormat.CHANNEL_IN_MONO;
-    private int mAudioEncoding = AudioFormat.ENCODING_PCM_16BIT;
+    private AudioSource mSource;
 
     private Listener mListener;
     private Callback mCallback;
@@ -61,13 +52,23 @@ public class Record {
         void freeRecordBuffer(BufferData buffer);
     }
 
+    /**
+     * 使用AudioRecord从麦克风录音
+     * @see AudioRecordSource
+     */
     public Record(Callback callback, int frequence, int channel, int bits, int bufferSize) {
+        this(callback, new AudioRecordSource(frequence, channel, bits, bufferSize), bufferSize);
+    }
+
+    /**
+     * @param source 声音输入
+     * @param bufferSize 每次读取的最大字节数
+     */
+    public Record(Callback callback, AudioSource source, int bufferSize) {
         mState = STATE_STOP;
 
         mCallback = callback;
-        mFrequence = frequence;
-        mChannel = channel;
-        mBits = bits;
+        mSource = source;
         mBufferSize = bufferSize;
     }
 
@@ -77,80 +78,52 @@ public class Record {
 
     public void start() {
         if (STATE_STOP == mState) {
-            switch (mChannel) {
-            case CHANNEL_1:
-                mChannelConfig = AudioFormat.CHANNEL_IN_MONO;
-                break;
-            case CHANNEL_2:
-                mChannelConfig = AudioFormat.CHANNEL_IN_STEREO;
-                break;
-            }
-
-            switch (mBits) {
-            case BITS_8:
-                mAudioEncoding = AudioFormat.ENCODING_PCM_8BIT;
-                break;
-
-            case BITS_16:
-                mAudioEncoding = AudioFormat.ENCODING_PCM_16BIT;
-                break;
-            }
+            if (mSource.open()) {
+                mState = STATE_START;
 
-            int minBufferSize = AudioRecord.getMinBufferSize(mFrequence, mChannelConfig, mAudioEncoding);
-            LogHelper.d(TAG, "minBufferSize:" + minBufferSize);
-            if ( mBufferSize >= minBufferSize ) {
-            	// 第二个参数，采样频率
-                AudioRecord record = new AudioRecord(MediaRecorder.AudioSource.MIC, mFrequence, mChannelConfig, mAudioEncoding, mBufferSize);
-                if (null != record) {
-                    try {
-                        mState = STATE_START;
-                        // 开始收集声音
-                        record.startRecording();
-                        LogHelper.d(TAG, "record start");
-
-                        if (null != mCallback) {
-                            if (null != mListener) {
-                                mListener.onStartRecord();
-                            }
+                if (null != mCallback) {
+                    if (null != mListener) {
+                        mListener.onStartRecord();
+                    }
 
-                            while (STATE_START == mState) {
-                                BufferData data = mCallback.getRecordBuffer();
-                                if (null != data) {
-                                    if (null != data.mData) {
-                                    	// 将声音（即消息中的一个字符转换成的声音）转换为字节数组
-                                    	// 即一个字符-->字节数组
-                                        int bufferReadResult = record.read(data.mData, 0, mBufferSize);
-                                        data.setFilledSize(bufferReadResult);
-                                        // 将数据放入队列中，等待VoiceRecognition解析
-                                        mCallback.freeRecordBuffer(data);
-                                    } else {
-                                        // end of input
-                                        LogHelper.d(TAG, "get end input data, so stop");
-                                        break;
-                                    }
-                                } else {
-                                    LogHelper.e(TAG, "get null data");
+                    while (STATE_START == mState) {
+                        BufferData data = mCallback.getRecordBuffer();
+                        if (null != data) {
+                            if (!data.isEndOfInput()) {
+                            	// 将声音（即消息中的一个字符转换成的声音）转换为字节数组
+                            	// 即一个字符-->字节数组
+                                int bufferReadResult = 0;
+                                while (0 == bufferReadResult && STATE_START == mState) {
+                                    bufferReadResult = mSource.read(data, mBufferSize);
+                                }
+                                data.setFilledSize(Math.max(bufferReadResult, 0));
+                                Tracer.trace(Tracer.EVENT_RECORD_BUFFER, mBufferSize, bufferReadResult);
+                                // 将数据放入队列中，等待VoiceRecognition解析
+                                mCallback.freeRecordBuffer(data);
+                                if (bufferReadResult < 0) {
+                                    LogHelper.e(TAG, "read source error:" + bufferReadResult);
                                     break;
                                 }
+                            } else {
+                                // end of input
+                                LogHelper.d(TAG, "get end input data, so stop");
+                                break;
                             }
-
-                            if (null != mListener) {
-                                mListener.onStopRecord();
-                            }
+                        } else {
+                            LogHelper.e(TAG, "get null data");
+                            break;
                         }
+                    }
 
-                        record.stop();
-                        record.release();
-
-                        LogHelper.d(TAG, "record stop");
-                    } catch ( IllegalStateException e) {
-                        e.printStackTrace();
-                        LogHelper.e(TAG, "start record error");
+                    if (null != mListener) {
+                        mListener.onStopRecord();
                     }
-                    mState = STATE_STOP;
                 }
+
+                mSource.close();
+                mState = STATE_STOP;
             } else {
-                LogHelper.e(TAG, "bufferSize is too small");
+                LogHelper.e(TAG, "open source error");
             }
         }
     }
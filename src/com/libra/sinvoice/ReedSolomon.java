@@ -0,0 +1,335 @@
+/*
+ * Copyright (C) 2013 gujicheng
+ * 
+ * Licensed under the GPL License Version 2.0;
+ * you may not use this file except in compliance with the License.
+ * 
+ * If you have any question, please contact me.
+ * 
+ *************************************************************************
+ **                   Author information                                **
+ *************************************************************************
+ ** Email: gujicheng197@126.com                                         **
+ ** QQ   : 29600731                                                     **
+ ** Weibo: http://weibo.com/gujicheng197                                **
+ *************************************************************************
+ */
+package com.libra.sinvoice;
+
+/**
+ * GF(2^m)上的Reed-Solomon编解码<br>
+ * 生成多项式的根为α^0 ~ α^(2t-1)，码字为系统码：前面是数据，后面是2t个校验符号，数组下标0为最高次项。
+ * 解码可同时纠正e个擦除(位置已知)和v个错误，只要e + 2v <= 2t。
+ * 所有表在构造时生成，编解码时使用预先分配的工作数组，不是线程安全的。
+ */
+public final class ReedSolomon {
+    private final static String TAG = "ReedSolomon";
+
+    // 本原多项式，下标为m
+    private final static int PRIMITIVE_POLY[] = { 0, 0, 0x7, 0xb, 0x13, 0x25, 0x43, 0x89, 0x11d, 0x211, 0x409 };
+    public final static int MIN_FIELD_BITS = 2;
+    public final static int MAX_FIELD_BITS = 10;
+
+    private int mFieldBits;
+    private int mFieldSize;
+    private int mExp[];
+    private int mLog[];
+    private int mParityCount;
+    // 生成多项式，下标0为最高次项(首一)
+    private int mGenerator[];
+
+    // 解码工作数组，下标为次数
+    private int mSyndromes[];
+    private int mErasureLocator[];
+    private int mErrorLocator[];
+    private int mLocator[];
+    private int mEvaluator[];
+    private int mPrev[];
+    private int mTemp[];
+
+    /**
+     * @param fieldBits 域的位数m，码字最长2^m - 1个符号
+     * @param parityCount 校验符号个数2t
+     */
+    public ReedSolomon(int fieldBits, int parityCount) {
+        if (fieldBits < MIN_FIELD_BITS || fieldBits > MAX_FIELD_BITS) {
+            throw new IllegalArgumentException("field bits out of range:" + fieldBits);
+        }
+        mFieldBits = fieldBits;
+        mFieldSize = 1 << fieldBits;
+        if (parityCount < 1 || parityCount >= mFieldSize - 1) {
+            throw new IllegalArgumentException("parity count out of range:" + parityCount);
+        }
+        mParityCount = parityCount;
+
+        // 指数表重复一遍，乘法时不用取模
+        mExp = new int[2 * mFieldSize];
+        mLog = new int[mFieldSize];
+        int x = 1;
+        for (int i = 0; i < mFieldSize - 1; ++i) {
+            mExp[i] = x;
+            mLog[x] = i;
+            x <<= 1;
+            if (0 != (x & mFieldSize)) {
+                x ^= PRIMITIVE_POLY[fieldBits];
+            }
+        }
+        for (int i = mFieldSize - 1; i < mExp.length; ++i) {
+            mExp[i] = mExp[i - (mFieldSize - 1)];
+        }
+
+        // g(x) = (x - α^0)(x - α^1)...(x - α^(2t-1))
+        mGenerator = new int[parityCount + 1];
+        mGenerator[0] = 1;
+        for (int i = 0; i < parityCount; ++i) {
+            int root = mExp[i];
+            for (int j = i + 1; j > 0; --j) {
+                mGenerator[j] = mGenerator[j] ^ mul(mGenerator[j - 1], root);
+            }
+        }
+
+        int size = parityCount + 1;
+        mSyndromes = new int[parityCount];
+        mErasureLocator = new int[size];
+        mErrorLocator = new int[size];
+        mLocator = new int[2 * size];
+        mEvaluator = new int[parityCount];
+        mPrev = new int[size];
+        mTemp = new int[size];
+    }
+
+    public int getFieldBits() {
+        return mFieldBits;
+    }
+
+    public int getParityCount() {
+        return mParityCount;
+    }
+
+    /**
+     * @return 码字的最大长度
+     */
+    public int getMaxLength() {
+        return mFieldSize - 1;
+    }
+
+    /**
+     * 计算校验符号
+     * @param codeword 前length - 2t个为数据，结果写入后2t个
+     * @param length 码字长度
+     */
+    public void encode(int[] codeword, int length) {
+        int dataCount = length - mParityCount;
+        for (int i = dataCount; i < length; ++i) {
+            codeword[i] = 0;
+        }
+        // 多项式除法，余数保存在校验位置
+        for (int i = 0; i < dataCount; ++i) {
+            int feedback = codeword[i] ^ codeword[dataCount];
+            for (int j = 0; j < mParityCount - 1; ++j) {
+                codeword[dataCount + j] = codeword[dataCount + j + 1] ^ mul(feedback, mGenerator[j + 1]);
+            }
+            codeword[length - 1] = mul(feedback, mGenerator[mParityCount]);
+        }
+    }
+
+    /**
+     * 就地纠错
+     * @param codeword 接收到的码字，擦除位置的值任意
+     * @param length 码字长度
+     * @param erasures 擦除的位置
+     * @param erasureCount 擦除个数
+     * @return 擦除以外找到的错误个数，无法纠正时返回-1
+     */
+    public int decode(int[] codeword, int length, int[] erasures, int erasureCount) {
+        if (length > mFieldSize - 1 || length <= mParityCount || erasureCount > mParityCount) {
+            return -1;
+        }
+
+        boolean clean = true;
+        for (int j = 0; j < mParityCount; ++j) {
+            int s = 0;
+            int root = mExp[j];
+            for (int i = 0; i < length; ++i) {
+                s = mul(s, root) ^ codeword[i];
+            }
+            mSyndromes[j] = s;
+            if (0 != s) {
+                clean = false;
+            }
+        }
+        if (clean) {
+            return 0;
+        }
+
+        // 擦除位置多项式 Γ(x) = Π(1 - X x)，X = α^(length - 1 - pos)
+        clear(mErasureLocator);
+        mErasureLocator[0] = 1;
+        for (int k = 0; k < erasureCount; ++k) {
+            int pos = erasures[k];
+            if (pos < 0 || pos >= length) {
+                return -1;
+            }
+            int loc = mExp[length - 1 - pos];
+            for (int i = k + 1; i > 0; --i) {
+                mErasureLocator[i] ^= mul(mErasureLocator[i - 1], loc);
+            }
+        }
+
+        // Forney修正伴随式 T = Γ S mod x^2t，T_e ~ T_(2t-1)只包含错误
+        for (int j = 0; j < mParityCount; ++j) {
+            int t = 0;
+            for (int i = 0; i <= j && i <= erasureCount; ++i) {
+                t ^= mul(mErasureLocator[i], mSyndromes[j - i]);
+            }
+            mEvaluator[j] = t;
+        }
+        int errorCount = berlekampMassey(mEvaluator, erasureCount, mParityCount - erasureCount);
+        if (errorCount < 0 || 2 * errorCount + erasureCount > mParityCount) {
+            return -1;
+        }
+
+        // Λ = σ Γ
+        int degree = errorCount + erasureCount;
+        clear(mLocator);
+        for (int i = 0; i <= errorCount; ++i) {
+            if (0 == mErrorLocator[i]) {
+                continue;
+            }
+            for (int j = 0; j <= erasureCount; ++j) {
+                mLocator[i + j] ^= mul(mErrorLocator[i], mErasureLocator[j]);
+            }
+        }
+
+        // Ω = S Λ mod x^2t
+        for (int j = 0; j < mParityCount; ++j) {
+            int w = 0;
+            for (int i = 0; i <= j && i <= degree; ++i) {
+                w ^= mul(mLocator[i], mSyndromes[j - i]);
+            }
+            mEvaluator[j] = w;
+        }
+
+        // Chien搜索，根的个数必须等于Λ的次数
+        int found = 0;
+        for (int pos = 0; pos < length; ++pos) {
+            int power = length - 1 - pos;
+            // X^-1
+            int xInv = mExp[(mFieldSize - 1 - power) % (mFieldSize - 1)];
+            if (0 != evaluate(mLocator, degree, xInv)) {
+                continue;
+            }
+            ++found;
+
+            // Forney：Y = X Ω(X^-1) / Λ'(X^-1)
+            int numerator = mul(mExp[power], evaluate(mEvaluator, mParityCount - 1, xInv));
+            int denominator = 0;
+            int xInv2 = mul(xInv, xInv);
+            int p = 1;
+            // 特征2下Λ'只剩奇次项
+            for (int i = 1; i <= degree; i += 2) {
+                denominator ^= mul(mLocator[i], p);
+                p = mul(p, xInv2);
+            }
+            if (0 == denominator) {
+                return -1;
+            }
+            codeword[pos] ^= div(numerator, denominator);
+        }
+        if (found != degree) {
+            LogHelper.d(TAG, "locator roots:" + found + " degree:" + degree);
+            return -1;
+        }
+        return errorCount;
+    }
+
+    /**
+     * @param sequence 从offset开始的count个元素
+     * @return 错误位置多项式σ的次数，结果在mErrorLocator
+     */
+    private int berlekampMassey(int[] sequence, int offset, int count) {
+        clear(mErrorLocator);
+        clear(mPrev);
+        mErrorLocator[0] = 1;
+        mPrev[0] = 1;
+        int len = 0;
+        int shift = 1;
+        int prevDiscrepancy = 1;
+
+        for (int n = 0; n < count; ++n) {
+            int d = sequence[offset + n];
+            for (int i = 1; i <= len; ++i) {
+                d ^= mul(mErrorLocator[i], sequence[offset + n - i]);
+            }
+            if (0 == d) {
+                ++shift;
+                continue;
+            }
+
+            int scale = div(d, prevDiscrepancy);
+            if (2 * len <= n) {
+                System.arraycopy(mErrorLocator, 0, mTemp, 0, mTemp.length);
+                if (!subtractShifted(scale, shift)) {
+                    return -1;
+                }
+                len = n + 1 - len;
+                System.arraycopy(mTemp, 0, mPrev, 0, mPrev.length);
+                prevDiscrepancy = d;
+                shift = 1;
+            } else {
+                if (!subtractShifted(scale, shift)) {
+                    return -1;
+                }
+                ++shift;
+            }
+        }
+        return len;
+    }
+
+    /**
+     * σ -= scale * x^shift * mPrev
+     */
+    private boolean subtractShifted(int scale, int shift) {
+        for (int i = 0; i + shift < mErrorLocator.length; ++i) {
+            mErrorLocator[i + shift] ^= mul(scale, mPrev[i]);
+        }
+        for (int i = mErrorLocator.length - shift; i < mPrev.length; ++i) {
+            if (i >= 0 && 0 != mPrev[i]) {
+                // 次数超出2t，错误太多
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 求多项式(下标为次数)在x处的值
+     */
+    private int evaluate(int[] poly, int degree, int x) {
+        int y = 0;
+        for (int i = degree; i >= 0; --i) {
+            y = mul(y, x) ^ poly[i];
+        }
+        return y;
+    }
+
+    private int mul(int a, int b) {
+        if (0 == a || 0 == b) {
+            return 0;
+        }
+        return mExp[mLog[a] + mLog[b]];
+    }
+
+    private int div(int a, int b) {
+        if (0 == a) {
+            return 0;
+        }
+        return mExp[mLog[a] + mFieldSize - 1 - mLog[b]];
+    }
+
+    private static void clear(int[] array) {
+        for (int i = 0; i < array.length; ++i) {
+            array[i] = 0;
+        }
+    }
+}
@@ -34,8 +34,11 @@ public class SinGenerator {
     public static final int BITS_16 = 32768;
     
     public static final int SAMPLE_RATE_8 = 8000;
-    public static final int SAMPLE_RATE_11 = 11250;
+    public static final int SAMPLE_RATE_11 = 11025;
     public static final int SAMPLE_RATE_16 = 16000;
+    public static final int SAMPLE_RATE_22 = 22050;
+    public static final int SAMPLE_RATE_44 = 44100;
+    public static final int SAMPLE_RATE_48 = 48000;
 
     public static final int UNIT_ACCURACY_1 = 4;
     public static final int UNIT_ACCURACY_2 = 8;
@@ -54,6 +57,11 @@ public class SinGenerator {
     private int mBufferSize;
     private Listener mListener;
     private Callback mCallback;
+    private WaveformCache mWaveformCache;
+    private Oscillator mOscillator;
+    // 和弦中每个音一个振荡器
+    private Oscillator mChordOscillators[];
+    private Oscillator mSingleOscillator[] = new Oscillator[1];
 
     public static interface Listener {
     	/**
@@ -73,6 +81,14 @@ public class SinGenerator {
         void freeGenBuffer(BufferData buffer);
     }
 
+    /**
+     * @param bits BITS_8或BITS_16
+     * @return 每个采样点的字节数
+     */
+    public static int getBytesPerSample(int bits) {
+        return (BITS_16 == bits) ? 2 : 1;
+    }
+
     public SinGenerator(Callback callback) {
         this(callback, DEFAULT_SAMPLE_RATE, DEFAULT_BITS, DEFAULT_BUFFER_SIZE);
     }
@@ -87,12 +103,33 @@ public class SinGenerator {
 
         mFilledSize = 0;
         mState = STATE_STOP;
+        mWaveformCache = WaveformCache.getDefault();
+        mOscillator = new ExactOscillator();
     }
 
     public void setListener(Listener listener) {
         mListener = listener;
     }
 
+    /**
+     * 设置音波缓存，为null时每次逐点计算正弦值
+     * @param cache
+     */
+    public void setWaveformCache(WaveformCache cache) {
+        mWaveformCache = cache;
+    }
+
+    /**
+     * 设置振荡器，默认为{@link ExactOscillator}，需要更快时可用{@link TableOscillator}
+     * @param oscillator
+     */
+    public void setOscillator(Oscillator oscillator) {
+        if (null != oscillator) {
+            mOscillator = oscillator;
+            mChordOscillators = null;
+        }
+    }
+
     public void stop() {
         if (STATE_START == mState) {
             mState = STATE_STOP;
@@ -114,74 +151,193 @@ public class SinGenerator {
         if (STATE_START == mState) {
             mGenRate = genRate;
             mDuration = duration;
+            Tracer.trace(Tracer.EVENT_GEN_TONE, mGenRate, mDuration);
+
+            if (null != mListener) {
+                mListener.onStartGen();
+            }
+
+            if (null != mWaveformCache) {
+                genFromCache();
+                return;
+            }
+
+            mOscillator.reset(mGenRate, mSampleRate);
+            mSingleOscillator[0] = mOscillator;
+
+            genSamples(mSingleOscillator, 1);
+        }
+    }
+
+    /**
+     * 同时生成多个音(和弦)，各音等幅叠加后除以音数，峰值不超过单音<br>
+     * 和弦不经过音波缓存
+     * @param genRates 各音的频率
+     * @param duration 时长
+     */
+    public void gen(int[] genRates, int duration) {
+        if (1 == genRates.length) {
+            gen(genRates[0], duration);
+            return;
+        }
+
+        if (STATE_START == mState) {
+            mGenRate = genRates[0];
+            mDuration = duration;
+            Tracer.trace(Tracer.EVENT_GEN_TONE, mGenRate, mDuration);
 
             if (null != mListener) {
                 mListener.onStartGen();
             }
 
-            // 正弦波峰？
-            int n = mBits / 2;
-            // 采样点个数？frame? mSampleRate单位时间为秒，所以要除以1000。
-            int totalCount = (mDuration * mSampleRate) / 1000;
-            
-            // 采集mGenRate频率的声音所需要的时间 = mGenRate / (double) mSampleRate?
-            double per = (mGenRate / (double) mSampleRate) * 2 * Math.PI;
-            double d = 0;
-
-            LogHelper.d(TAG, "genRate:" + genRate);
-            if (null != mCallback) {
-                mFilledSize = 0;
-                // 从生产队列中取出
-                BufferData buffer = mCallback.getGenBuffer();
-                if (null != buffer) {
-                    for (int i = 0; i < totalCount; ++i) {
-                        if (STATE_START == mState) {
-                        	// 采样点x轴坐标 = Math.sin(d)
-                        	// 获取采样点的振幅，没有负值，所以+128
-                            int out = (int) (Math.sin(d) * n) + 128;
-
-                            if (mFilledSize >= mBufferSize - 1) {
-                                // free buffer
-                                buffer.setFilledSize(mFilledSize);
-                                // 放到消费队列中
-                                mCallback.freeGenBuffer(buffer);
-
-                                mFilledSize = 0;
-                                buffer = mCallback.getGenBuffer();
-                                if (null == buffer) {
-                                    LogHelper.e(TAG, "get null buffer");
-                                    break;
-                                }
+            int count = genRates.length;
+            if (null == mChordOscillators || mChordOscillators.length < count) {
+                mChordOscillators = new Oscillator[count];
+                for (int k = 0; k < count; ++k) {
+                    mChordOscillators[k] = newOscillator();
+                }
+            }
+            for (int k = 0; k < count; ++k) {
+                mChordOscillators[k].reset(genRates[k], mSampleRate);
+            }
+
+            genSamples(mChordOscillators, count);
+        }
+    }
+
+    /**
+     * 和弦的其他音使用与mOscillator同类型的振荡器
+     */
+    private Oscillator newOscillator() {
+        Oscillator oscillator = mOscillator.newInstance();
+        if (null == oscillator) {
+            LogHelper.e(TAG, "new oscillator failed, use ExactOscillator");
+            oscillator = new ExactOscillator();
+        }
+        return oscillator;
+    }
+
+    /**
+     * 逐点生成，振荡器需已reset
+     * @param oscillators 前count个振荡器的输出叠加为一个采样点
+     */
+    private void genSamples(Oscillator[] oscillators, int count) {
+        // 正弦波峰？
+        int n = mBits / 2;
+        // 采样点个数？frame? mSampleRate单位时间为秒，所以要除以1000。
+        int totalCount = (mDuration * mSampleRate) / 1000;
+
+        if (null != mCallback) {
+            mFilledSize = 0;
+            // 从生产队列中取出
+            BufferData buffer = mCallback.getGenBuffer();
+            if (null != buffer) {
+                for (int i = 0; i < totalCount; ++i) {
+                    if (STATE_START == mState) {
+                    	// 获取采样点的振幅，没有负值，所以+128
+                        int out;
+                        if (1 == count) {
+                            out = oscillators[0].next(n);
+                        } else {
+                            out = 0;
+                            for (int k = 0; k < count; ++k) {
+                                out += oscillators[k].next(n);
                             }
+                            out /= count;
+                        }
+                        out += 128;
 
-                            // 0xff二进制 0000 0000 1111 1111
-                            // & 0xff 操作，舍弃了任意数的高八位(byte就是8位，不用&0xff也一样，直接强转byte也一样？)
-                            buffer.mData[mFilledSize++] = (byte) (out & 0xff);
-                            if (BITS_16 == mBits) {
-                            	// 保留高8位
-                                buffer.mData[mFilledSize++] = (byte) ((out >> 8) & 0xff);
+                        if (mFilledSize >= mBufferSize - 1) {
+                            // free buffer
+                            buffer.setFilledSize(mFilledSize);
+                            // 放到消费队列中
+                            mCallback.freeGenBuffer(buffer);
+
+                            mFilledSize = 0;
+                            buffer = mCallback.getGenBuffer();
+                            if (null == buffer) {
+                                LogHelper.e(TAG, "get null buffer");
+                                break;
                             }
+                        }
 
-                            d += per;
-                        } else {
-                            LogHelper.d(TAG, "sin gen force stop");
-                            break;
+                        // 0xff二进制 0000 0000 1111 1111
+                        // & 0xff 操作，舍弃了任意数的高八位(byte就是8位，不用&0xff也一样，直接强转byte也一样？)
+                        buffer.mData[mFilledSize++] = (byte) (out & 0xff);
+                        if (BITS_16 == mBits) {
+                        	// 保留高8位
+                            buffer.mData[mFilledSize++] = (byte) ((out >> 8) & 0xff);
                         }
+                    } else {
+                        LogHelper.d(TAG, "sin gen force stop");
+                        break;
                     }
-                } else {
-                    LogHelper.e(TAG, "get null buffer");
                 }
+            } else {
+                LogHelper.e(TAG, "get null buffer");
+            }
 
-                if (null != buffer) {
-                    buffer.setFilledSize(mFilledSize);
-                    // 放到消费队列中
-                    mCallback.freeGenBuffer(buffer);
-                }
-                mFilledSize = 0;
+            if (null != buffer) {
+                buffer.setFilledSize(mFilledSize);
+                // 放到消费队列中
+                mCallback.freeGenBuffer(buffer);
+            }
+            mFilledSize = 0;
 
-                if (null != mListener) {
-                    mListener.onStopGen();
+            if (null != mListener) {
+                mListener.onStopGen();
+            }
+        }
+    }
+
+    /**
+     * 从缓存中取出整段音波，按缓冲区大小分段拷贝
+     */
+    private void genFromCache() {
+        if (null != mCallback) {
+            byte[] block = mWaveformCache.getBlock(mOscillator, mGenRate, mSampleRate, mBits, mDuration);
+            int frameSize = getBytesPerSample(mBits);
+            int capacity = (mBufferSize / frameSize) * frameSize;
+            int offset = 0;
+
+            mFilledSize = 0;
+            BufferData buffer = mCallback.getGenBuffer();
+            if (null != buffer) {
+                while (offset < block.length) {
+                    if (STATE_START == mState) {
+                        if (mFilledSize >= capacity) {
+                            buffer.setFilledSize(mFilledSize);
+                            mCallback.freeGenBuffer(buffer);
+
+                            mFilledSize = 0;
+                            buffer = mCallback.getGenBuffer();
+                            if (null == buffer) {
+                                LogHelper.e(TAG, "get null buffer");
+                                break;
+                            }
+                        }
+
+                        int len = Math.min(capacity - mFilledSize, block.length - offset);
+                        System.arraycopy(block, offset, buffer.mData, mFilledSize, len);
+                        mFilledSize += len;
+                        offset += len;
+                    } else {
+                        LogHelper.d(TAG, "sin gen force stop");
+                        break;
+                    }
                 }
+            } else {
+                LogHelper.e(TAG, "get null buffer");
+            }
+
+            if (null != buffer) {
+                buffer.setFilledSize(mFilledSize);
+                mCallback.freeGenBuffer(buffer);
+            }
+            mFilledSize = 0;
+
+            if (null != mListener) {
+                mListener.onStopGen();
             }
         }
     }
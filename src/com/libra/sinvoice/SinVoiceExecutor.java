@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2013 gujicheng
+ * 
+ * Licensed under the GPL License Version 2.0;
+ * you may not use this file except in compliance with the License.
+ * 
+ * If you have any question, please contact me.
+ * 
+ *************************************************************************
+ **                   Author information                                **
+ *************************************************************************
+ ** Email: gujicheng197@126.com                                         **
+ ** QQ   : 29600731                                                     **
+ ** Weibo: http://weibo.com/gujicheng197                                **
+ *************************************************************************
+ */
+package com.libra.sinvoice;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import android.os.Process;
+
+/**
+ * 发送端、接收端各阶段(编码、播放、录音、识别)运行的线程池<br>
+ * 默认所有实例共用一个线程池，常驻CORE_THREAD_COUNT个线程，可同时运行一个发送端和一个接收端，
+ * 再多时临时增加线程，空闲KEEP_ALIVE_SECONDS秒后回收。每次play()、start()不再新建线程。<br>
+ * 各阶段会一直阻塞到停止，自己提供的线程池需能同时运行所有阶段(每个发送端、接收端各2个)。
+ */
+public class SinVoiceExecutor {
+    private final static String TAG = "SinVoiceExecutor";
+
+    // 优先级与android.os.Process的THREAD_PRIORITY_*相同，数值越小优先级越高
+    public final static int PRIORITY_DEFAULT = Process.THREAD_PRIORITY_DEFAULT;
+    public final static int PRIORITY_AUDIO = Process.THREAD_PRIORITY_AUDIO;
+    public final static int PRIORITY_URGENT_AUDIO = Process.THREAD_PRIORITY_URGENT_AUDIO;
+
+    public final static int CORE_THREAD_COUNT = 4;
+    public final static int KEEP_ALIVE_SECONDS = 60;
+
+    // 不在Android上运行时使用Java线程优先级
+    private static final boolean HAS_ANDROID_PROCESS = hasAndroidProcess();
+
+    private static ExecutorService sDefaultExecutor;
+
+    private static boolean hasAndroidProcess() {
+        try {
+            Class.forName("android.os.Process");
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 所有发送端、接收端默认共用的线程池，线程为守护线程
+     */
+    public static synchronized ExecutorService getDefault() {
+        if (null == sDefaultExecutor) {
+            sDefaultExecutor = new ThreadPoolExecutor(CORE_THREAD_COUNT, Integer.MAX_VALUE, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                    new SynchronousQueue<Runnable>(), new ThreadFactory() {
+                        private int mCount;
+
+                        @Override
+                        public synchronized Thread newThread(Runnable r) {
+                            Thread thread = new Thread(r, "SinVoice-" + (++mCount));
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+        }
+        return sDefaultExecutor;
+    }
+
+    /**
+     * 以指定优先级运行一个阶段，结束后恢复默认优先级
+     * @param priority {@link #PRIORITY_DEFAULT}、{@link #PRIORITY_AUDIO}或{@link #PRIORITY_URGENT_AUDIO}
+     * @return 用于{@link #await(Future)}，线程池拒绝时返回null
+     */
+    public static Future<?> submit(ExecutorService executor, final Runnable task, final int priority) {
+        try {
+            return executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    setPriority(priority);
+                    try {
+                        task.run();
+                    } finally {
+                        setPriority(PRIORITY_DEFAULT);
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            LogHelper.e(TAG, "submit task failed");
+            return null;
+        }
+    }
+
+    /**
+     * 等待一个阶段结束
+     * @param future 可以为null
+     */
+    public static void await(Future<?> future) {
+        if (null != future) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            } catch (ExecutionException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private static void setPriority(int priority) {
+        if (HAS_ANDROID_PROCESS) {
+            Process.setThreadPriority(priority);
+        } else if (priority <= PRIORITY_URGENT_AUDIO) {
+            Thread.currentThread().setPriority(Thread.MAX_PRIORITY);
+        } else if (priority < PRIORITY_DEFAULT) {
+            Thread.currentThread().setPriority(Thread.MAX_PRIORITY - 1);
+        } else {
+            Thread.currentThread().setPriority(Thread.NORM_PRIORITY);
+        }
+    }
+}
@@ -0,0 +1,285 @@
+/*
+ * Copyright (C) 2013 gujicheng
+ * 
+ * Licensed under the GPL License Version 2.0;
+ * you may not use this file except in compliance with the License.
+ * 
+ * If you have any question, please contact me.
+ * 
+ *************************************************************************
+ **                   Author information                                **
+ *************************************************************************
+ ** Email: gujicheng197@126.com                                         **
+ ** QQ   : 29600731                                                     **
+ ** Weibo: http://weibo.com/gujicheng197                                **
+ *************************************************************************
+ */
+package com.libra.sinvoice;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 发送端、接收端的运行统计<br>
+ * 记录只使用原子变量，不加锁也不分配内存，可以在生产环境中一直打开；读取时各项之间不保证是同一时刻的值。<br>
+ * 发送端和接收端用到的项不同，没用到的项为0。
+ */
+public class SinVoiceMetrics {
+    /**
+     * 计数器
+     */
+    public static final class Counter {
+        private final AtomicLong mValue = new AtomicLong();
+
+        public void inc() {
+            mValue.incrementAndGet();
+        }
+
+        public void add(long n) {
+            mValue.addAndGet(n);
+        }
+
+        public long get() {
+            return mValue.get();
+        }
+
+        public void reset() {
+            mValue.set(0);
+        }
+
+        @Override
+        public String toString() {
+            return String.valueOf(get());
+        }
+    }
+
+    /**
+     * 按2的幂分桶的直方图，第i个桶记录[2^(i-1), 2^i)的值，第0个桶记录不大于0的值
+     */
+    public static final class Histogram {
+        private final static int BUCKET_COUNT = 64;
+
+        private final AtomicLongArray mBuckets = new AtomicLongArray(BUCKET_COUNT);
+        private final AtomicLong mCount = new AtomicLong();
+        private final AtomicLong mSum = new AtomicLong();
+        private final AtomicLong mMax = new AtomicLong();
+
+        public void record(long value) {
+            int bucket = (value > 0) ? Math.min(BUCKET_COUNT - 1, 64 - Long.numberOfLeadingZeros(value)) : 0;
+            mBuckets.incrementAndGet(bucket);
+            mCount.incrementAndGet();
+            mSum.addAndGet(value);
+            long max = mMax.get();
+            while (value > max && !mMax.compareAndSet(max, value)) {
+                max = mMax.get();
+            }
+        }
+
+        public long getCount() {
+            return mCount.get();
+        }
+
+        public long getSum() {
+            return mSum.get();
+        }
+
+        public long getMax() {
+            return mMax.get();
+        }
+
+        public double getMean() {
+            long count = getCount();
+            return (count > 0) ? (double) getSum() / count : 0;
+        }
+
+        /**
+         * @param percent 0到100
+         * @return 百分位数所在桶的上界，误差在2倍以内
+         */
+        public long getPercentile(double percent) {
+            long count = getCount();
+            if (count <= 0) {
+                return 0;
+            }
+            long target = (long) Math.ceil(count * percent / 100);
+            long seen = 0;
+            for (int i = 0; i < BUCKET_COUNT; ++i) {
+                seen += mBuckets.get(i);
+                if (seen >= target) {
+                    return (0 == i) ? 0 : Math.min(getMax(), (1L << i) - 1);
+                }
+            }
+            return getMax();
+        }
+
+        public void reset() {
+            for (int i = 0; i < BUCKET_COUNT; ++i) {
+                mBuckets.set(i, 0);
+            }
+            mCount.set(0);
+            mSum.set(0);
+            mMax.set(0);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("count=%d mean=%.1f p50=%d p99=%d max=%d", getCount(), getMean(), getPercentile(50), getPercentile(99), getMax());
+        }
+    }
+
+    // Buffer：取空数组、取填充过的数组的等待时间(ns)，放入填充过的数组后队列中的个数
+    private final Histogram mEmptyWaitNanos = new Histogram();
+    private final Histogram mFullWaitNanos = new Histogram();
+    private final Histogram mQueueOccupancy = new Histogram();
+
+    // PcmPlayer：写入AudioSink的时间(ns)，写入时间超过数据时长两倍的次数，播放时队列中没有数据的次数
+    private final Histogram mSinkWriteNanos = new Histogram();
+    private final Counter mWriteStalls = new Counter();
+    private final Counter mUnderruns = new Counter();
+
+    // Record：每次读取的字节数，录音时没有空数组、需要等待识别线程的次数
+    private final Histogram mRecordReadBytes = new Histogram();
+    private final Counter mOverruns = new Counter();
+
+    // VoiceRecognition：处理的采样点数和处理用的时间
+    private final Counter mSamplesProcessed = new Counter();
+    private final Counter mProcessNanos = new Counter();
+
+    // 识别结果
+    private final Counter mSymbolsRecognized = new Counter();
+    private final Counter mSymbolsRejected = new Counter();
+    private final Counter mMessagesDecoded = new Counter();
+    private final Counter mMessagesFailed = new Counter();
+    // 从含结束标志的那块数据录好到回调消息结束(成功或失败)
+    private final Histogram mDecodeLatencyNanos = new Histogram();
+    // 从收到开始标志到回调消息结束，主要是消息本身的播放时长
+    private final Histogram mMessageDurationNanos = new Histogram();
+
+    public Histogram getEmptyWaitNanos() {
+        return mEmptyWaitNanos;
+    }
+
+    public Histogram getFullWaitNanos() {
+        return mFullWaitNanos;
+    }
+
+    public Histogram getQueueOccupancy() {
+        return mQueueOccupancy;
+    }
+
+    public Histogram getSinkWriteNanos() {
+        return mSinkWriteNanos;
+    }
+
+    /**
+     * @return 一次写入AudioSink的时间超过所写数据播放时长两倍的次数
+     */
+    public Counter getWriteStalls() {
+        return mWriteStalls;
+    }
+
+    /**
+     * @return 播放线程要取数据时队列已空的次数，此时声音会中断
+     */
+    public Counter getUnderruns() {
+        return mUnderruns;
+    }
+
+    public Histogram getRecordReadBytes() {
+        return mRecordReadBytes;
+    }
+
+    /**
+     * @return 录音线程要取空数组时队列已空的次数，识别跟不上录音，可能丢失声音
+     */
+    public Counter getOverruns() {
+        return mOverruns;
+    }
+
+    public Counter getSamplesProcessed() {
+        return mSamplesProcessed;
+    }
+
+    public Counter getProcessNanos() {
+        return mProcessNanos;
+    }
+
+    /**
+     * @return 识别线程每秒能处理的采样点数，远大于采样率时说明识别有余量
+     */
+    public double getSamplesPerSecond() {
+        long nanos = mProcessNanos.get();
+        return (nanos > 0) ? mSamplesProcessed.get() * 1e9 / nanos : 0;
+    }
+
+    public Counter getSymbolsRecognized() {
+        return mSymbolsRecognized;
+    }
+
+    /**
+     * @return 识别出但没有用上的音，如不在码本中、流中无效的音，或所在消息纠错、还原失败
+     */
+    public Counter getSymbolsRejected() {
+        return mSymbolsRejected;
+    }
+
+    public Counter getMessagesDecoded() {
+        return mMessagesDecoded;
+    }
+
+    public Counter getMessagesFailed() {
+        return mMessagesFailed;
+    }
+
+    /**
+     * @return 从含结束标志的那块数据录好(解码文件时为开始处理)到回调消息结束的时间(ns)，
+     * 包括在队列中等待、解码和纠错、还原数据
+     */
+    public Histogram getDecodeLatencyNanos() {
+        return mDecodeLatencyNanos;
+    }
+
+    /**
+     * @return 从收到开始标志到回调消息结束的时间(ns)，没有收到开始标志的消息不记录
+     */
+    public Histogram getMessageDurationNanos() {
+        return mMessageDurationNanos;
+    }
+
+    public void reset() {
+        mEmptyWaitNanos.reset();
+        mFullWaitNanos.reset();
+        mQueueOccupancy.reset();
+        mSinkWriteNanos.reset();
+        mWriteStalls.reset();
+        mUnderruns.reset();
+        mRecordReadBytes.reset();
+        mOverruns.reset();
+        mSamplesProcessed.reset();
+        mProcessNanos.reset();
+        mSymbolsRecognized.reset();
+        mSymbolsRejected.reset();
+        mMessagesDecoded.reset();
+        mMessagesFailed.reset();
+        mDecodeLatencyNanos.reset();
+        mMessageDurationNanos.reset();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("emptyWaitNanos: ").append(mEmptyWaitNanos).append('\n');
+        sb.append("fullWaitNanos: ").append(mFullWaitNanos).append('\n');
+        sb.append("queueOccupancy: ").append(mQueueOccupancy).append('\n');
+        sb.append("sinkWriteNanos: ").append(mSinkWriteNanos).append('\n');
+        sb.append("writeStalls: ").append(mWriteStalls).append(" underruns: ").append(mUnderruns).append('\n');
+        sb.append("recordReadBytes: ").append(mRecordReadBytes).append('\n');
+        sb.append("overruns: ").append(mOverruns).append('\n');
+        sb.append(String.format("samplesProcessed: %d (%.0f/s)", mSamplesProcessed.get(), getSamplesPerSecond())).append('\n');
+        sb.append("symbols recognized: ").append(mSymbolsRecognized).append(" rejected: ").append(mSymbolsRejected).append('\n');
+        sb.append("messages decoded: ").append(mMessagesDecoded).append(" failed: ").append(mMessagesFailed).append('\n');
+        sb.append("decodeLatencyNanos: ").append(mDecodeLatencyNanos).append('\n');
+        sb.append("messageDurationNanos: ").append(mMessageDurationNanos);
+        return sb.toString();
+    }
+}
@@ -16,11 +16,16 @@
  */
 package com.libra.sinvoice;
 
+import java.io.ByteArrayOutputStream;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
 
 import android.media.AudioFormat;
-import android.text.TextUtils;
 
 import com.libra.sinvoice.Buffer.BufferData;
 
@@ -37,20 +42,36 @@ public class SinVoicePlayer implements Encoder.Listener, Encoder.Callback, PcmPl
     private final static int STATE_START = 1;
     private final static int STATE_STOP = 2;
     private final static int STATE_PENDING = 3;
-
-    private final static int DEFAULT_GEN_DURATION = 100;
+    private final static int STATE_LOOP = 4;
 
     private String mCodeBook;
     private List<Integer> mCodes = new ArrayList<Integer>();
+    private FecCodec mFec;
+    private boolean mRepeatEscape;
+    private MessageCache mMessageCache;
+    // 不为null时记录编码结果，用于放入mMessageCache
+    private ByteArrayOutputStream mCapture;
+    // 不为null时在调用线程中生成整条消息，编码结果只记录不播放
+    private BufferData mRenderBuffer;
+    private int mBufferSize;
+    // 流式发送
+    private StreamCodec mStreamCodec;
+    private CodeQueue mStream;
+    private List<Integer> mStreamCodes = new ArrayList<Integer>();
 
     private Encoder mEncoder;
     private PcmPlayer mPlayer;
     private Buffer mBuffer;
 
     private int mState;
+    private SinVoiceMetrics mMetrics = new SinVoiceMetrics();
+    // 本次播放是否已取到过数据，之后队列为空记为一次中断
+    private boolean mPlayFed;
     private Listener mListener;
-    private Thread mPlayThread;
-    private Thread mEncodeThread;
+    private ExecutorService mExecutor = SinVoiceExecutor.getDefault();
+    private int mThreadPriority = SinVoiceExecutor.PRIORITY_AUDIO;
+    private Future<?> mPlayTask;
+    private Future<?> mEncodeTask;
 
     public static interface Listener {
         void onPlayStart();
@@ -58,6 +79,52 @@ public class SinVoicePlayer implements Encoder.Listener, Encoder.Callback, PcmPl
         void onPlayEnd();
     }
 
+    /**
+     * 流式发送时编码线程从中取code，没有code时阻塞等待
+     */
+    private static class CodeQueue implements Iterator<Integer> {
+        private final static int END = -1;
+
+        private LinkedBlockingQueue<Integer> mQueue = new LinkedBlockingQueue<Integer>();
+        private Integer mNext;
+
+        public void put(List<Integer> codes) {
+            mQueue.addAll(codes);
+        }
+
+        public void end() {
+            mQueue.add(END);
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (null == mNext) {
+                try {
+                    mNext = mQueue.take();
+                } catch (InterruptedException e) {
+                    e.printStackTrace();
+                    mNext = END;
+                }
+            }
+            return END != mNext.intValue();
+        }
+
+        @Override
+        public Integer next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Integer next = mNext;
+            mNext = null;
+            return next;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
     public SinVoicePlayer() {
         this(Common.DEFAULT_CODE_BOOK);
     }
@@ -78,13 +145,45 @@ public class SinVoicePlayer implements Encoder.Listener, Encoder.Callback, PcmPl
      * @param buffCount
      */
     public SinVoicePlayer(String codeBook, int sampleRate, int bufferSize, int buffCount) {
+        this(codeBook, sampleRate, SinGenerator.BITS_16, bufferSize, buffCount);
+    }
+
+    /**
+     * @param bits {@link SinGenerator#BITS_16}或{@link SinGenerator#BITS_8}，8位为无符号PCM，数据量减半；
+     * bufferSize仍按字节计
+     */
+    public SinVoicePlayer(String codeBook, int sampleRate, int bits, int bufferSize, int buffCount) {
+        this(codeBook, sampleRate, bits, bufferSize, buffCount, new AudioTrackSink(sampleRate, AudioFormat.CHANNEL_OUT_MONO,
+                (SinGenerator.BITS_8 == bits) ? AudioFormat.ENCODING_PCM_8BIT : AudioFormat.ENCODING_PCM_16BIT, bufferSize));
+    }
+
+    /**
+     * 
+     * @param codeBook 码本，码本中文字对应的频率，见{@link Encoder#CODE_FREQUENCY}
+     * @param sampleRate
+     * @param bufferSize
+     * @param buffCount
+     * @param sink 声音输出，如{@link AudioTrackSink}、{@link LoopbackAudio#getSink()}
+     */
+    public SinVoicePlayer(String codeBook, int sampleRate, int bufferSize, int buffCount, AudioSink sink) {
+        this(codeBook, sampleRate, SinGenerator.BITS_16, bufferSize, buffCount, sink);
+    }
+
+    /**
+     * @param bits {@link SinGenerator#BITS_16}或{@link SinGenerator#BITS_8}，sink需使用相同的格式
+     */
+    public SinVoicePlayer(String codeBook, int sampleRate, int bits, int bufferSize, int buffCount, AudioSink sink) {
         mState = STATE_STOP;
-        mBuffer = new Buffer(buffCount, bufferSize);
+        mBufferSize = bufferSize;
+        // 编码线程只生产、播放线程只消费，可以使用无锁队列
+        mBuffer = new Buffer(buffCount, bufferSize, SpscRing.WAIT_PARK);
 
-        mEncoder = new Encoder(this, sampleRate, SinGenerator.BITS_16, bufferSize);
+        mEncoder = new Encoder(this, sampleRate, bits, bufferSize);
         mEncoder.setListener(this);
-        mPlayer = new PcmPlayer(this, sampleRate, AudioFormat.CHANNEL_OUT_MONO, AudioFormat.ENCODING_PCM_16BIT, bufferSize);
+        mPlayer = new PcmPlayer(this, sink);
         mPlayer.setListener(this);
+        mBuffer.setMetrics(mMetrics);
+        mPlayer.setMetrics(mMetrics, sampleRate * SinGenerator.getBytesPerSample(bits));
 
         setCodeBook(codeBook);
     }
@@ -93,8 +192,86 @@ public class SinVoicePlayer implements Encoder.Listener, Encoder.Callback, PcmPl
         mListener = listener;
     }
 
+    /**
+     * @return 运行统计，见{@link SinVoiceMetrics}
+     */
+    public SinVoiceMetrics getMetrics() {
+        return mMetrics;
+    }
+
+    /**
+     * 设置运行各阶段的线程池，默认为{@link SinVoiceExecutor#getDefault()}，下次开始时生效
+     * @param executor 需能同时运行2个一直阻塞到停止的任务
+     */
+    public void setExecutor(ExecutorService executor) {
+        if (null != executor) {
+            mExecutor = executor;
+        }
+    }
+
+    /**
+     * 设置编码、播放线程的优先级，默认为{@link SinVoiceExecutor#PRIORITY_AUDIO}，下次开始时生效
+     * @param priority 见{@link SinVoiceExecutor#PRIORITY_URGENT_AUDIO}等
+     */
+    public void setThreadPriority(int priority) {
+        mThreadPriority = priority;
+    }
+
+    /**
+     * 使用频率规划生成的音，为null时恢复原有的7个音<br>
+     * 规划的音更多时码本可以更长，需要在设置更长的码本之前调用
+     * @param plan 采样率需与播放采样率相同
+     */
+    public void setFrequencyPlan(FrequencyPlan plan) {
+        mEncoder.setFrequencyPlan(plan);
+    }
+
+    /**
+     * 按接收端解码器计算每个音的时长，代替固定的{@link Common#DEFAULT_GEN_DURATION}；为null时恢复固定时长
+     * @param timing
+     */
+    public void setSymbolTiming(SymbolTiming timing) {
+        mEncoder.setSymbolTiming(timing);
+    }
+
+    /**
+     * 设置前向纠错，为null时不纠错；接收端需设置相同参数的{@link FecCodec}
+     * @param fec 符号个数需与当前的频率规划或和弦码表相同
+     */
+    public void setFec(FecCodec fec) {
+        mFec = fec;
+    }
+
+    /**
+     * 设置整条消息的PCM缓存，为null时不缓存<br>
+     * 缓存命中时不经过Encoder，直接把数据交给PcmPlayer，重复播放时从第二遍开始命中
+     * @param cache 可以是{@link MessageCache#getDefault()}或自己的缓存
+     */
+    public void setMessageCache(MessageCache cache) {
+        mMessageCache = cache;
+    }
+
+    /**
+     * 和弦模式，每个字符同时发出多个音；为null时恢复单音<br>
+     * 和弦码表的符号更多，需要在设置更长的码本之前调用
+     * @param table 最高音需在采样率允许的范围内，见{@link ChordTable#createDefault(int)}
+     * @throws IllegalArgumentException 码表中有超过0.45倍采样率的音
+     */
+    public void setChordTable(ChordTable table) {
+        mEncoder.setChordTable(table);
+    }
+
+    /**
+     * 转义相邻的重复字符，码本中的文字可以任意组合，接收端需设置{@link SinVoiceRecognition#setRepeatEscape(boolean)}<br>
+     * 最后一个数据音用作重复符号，码本需比不转义时少一个字符；使用前向纠错时不需要转义
+     * @param escape
+     */
+    public void setRepeatEscape(boolean escape) {
+        mRepeatEscape = escape;
+    }
+
     public void setCodeBook(String codeBook) {
-        if (!TextUtils.isEmpty(codeBook) && codeBook.length() < Encoder.getMaxCodeCount() - 1) {
+        if (null != codeBook && codeBook.length() > 0 && codeBook.length() < mEncoder.getSymbolCount() - 1) {
             mCodeBook = codeBook;
         }
     }
@@ -105,35 +282,14 @@ public class SinVoicePlayer implements Encoder.Listener, Encoder.Callback, PcmPl
      * @return 是否转换成功
      */
     private boolean convertTextToCodes(String text) {
-        boolean ret = true;
-
-        if (!TextUtils.isEmpty(text)) {
-            mCodes.clear();
-            // 声音开始标志
-            mCodes.add(Common.START_TOKEN);
-            int len = text.length();
-            for (int i = 0; i < len; ++i) {
-                char ch = text.charAt(i);
-                // 找到字符在码本中的位置
-                int index = mCodeBook.indexOf(ch);
-                if (index > -1) {
-                	//将字符在码本中的位置存到集合中
-                    mCodes.add(index + 1);
-                } else {
-                    ret = false;
-                    LogHelper.d(TAG, "invalidate char:" + ch);
-                    break;
-                }
-            }
-            if (ret) {
-            	// 声音结束标志
-                mCodes.add(Common.STOP_TOKEN);
+        if (null != mFec) {
+            if (mFec.getSymbolCount() != mEncoder.getSymbolCount()) {
+                LogHelper.e(TAG, "fec symbol count mismatch");
+                return false;
             }
-        } else {
-            ret = false;
+            return mFec.encode(mCodeBook, text, mCodes);
         }
-
-        return ret;
+        return Encoder.convertTextToCodes(mCodeBook, text, mCodes, mEncoder.getSymbolCount(), mRepeatEscape);
     }
 
     /**
@@ -154,41 +310,256 @@ public class SinVoicePlayer implements Encoder.Listener, Encoder.Callback, PcmPl
      */
     public void play(final String text, final boolean repeat, final int muteInterval) {
         if (STATE_STOP == mState && null != mCodeBook && convertTextToCodes(text)) {
-            mState = STATE_PENDING;
+            startPlay(repeat, muteInterval);
+        }
+    }
 
-            mPlayThread = new Thread() {
-                @Override
-                public void run() {
-                    mPlayer.start();
-                }
-            };
-            if (null != mPlayThread) {
-                mPlayThread.start();
+    /**
+     * @param data 发送的二进制数据
+     */
+    public void play(byte[] data) {
+        play(data, false, 0);
+    }
+
+    /**
+     * 将二进制数据转换为声音播放，不使用码本，按当前符号个数紧凑打包<br>
+     * 接收端需设置{@link SinVoiceRecognition#setBytesListener(SinVoiceRecognition.BytesListener)}
+     * @param data 发送的二进制数据
+     * @param repeat 是否重复
+     * @param muteInterval 两次声音的间隔
+     */
+    public void play(byte[] data, boolean repeat, int muteInterval) {
+        if (STATE_STOP == mState && convertBytesToCodes(data)) {
+            startPlay(repeat, muteInterval);
+        }
+    }
+
+    /**
+     * 循环播放文字，一条消息加静音只生成一次，由声音输出自己循环(Android上为MODE_STATIC的AudioTrack)，不占用编码和播放线程<br>
+     * 正在循环时再次调用，在当前这一遍播完后换成新的文字；声音输出不支持循环时与play(text, true, muteInterval)相同
+     * @param text 发送的文字
+     * @param muteInterval 两次声音的间隔
+     * @return 是否开始循环
+     */
+    public boolean playLoop(String text, int muteInterval) {
+        if ((STATE_STOP == mState || STATE_LOOP == mState) && null != mCodeBook && convertTextToCodes(text)) {
+            return loopCodes(muteInterval);
+        }
+        return false;
+    }
+
+    /**
+     * 循环播放二进制数据，见{@link #playLoop(String, int)}
+     */
+    public boolean playLoop(byte[] data, int muteInterval) {
+        if ((STATE_STOP == mState || STATE_LOOP == mState) && convertBytesToCodes(data)) {
+            return loopCodes(muteInterval);
+        }
+        return false;
+    }
+
+    private boolean loopCodes(int muteInterval) {
+        if (!mPlayer.canLoop()) {
+            if (STATE_STOP == mState) {
+                return startPlay(true, muteInterval);
             }
+            return false;
+        }
 
-            mEncodeThread = new Thread() {
-                @Override
-                public void run() {
-                    do {
-                        LogHelper.d(TAG, "encode start");
-                        mEncoder.encode(mCodes, DEFAULT_GEN_DURATION, muteInterval);
-                        LogHelper.d(TAG, "encode end");
-
-                        mEncoder.stop();
-                    } while (repeat && STATE_PENDING != mState);
-                    stopPlayer();
-                }
-            };
-            if (null != mEncodeThread) {
-                mEncodeThread.start();
+        byte[] pcm = renderCodes(muteInterval);
+        if (mPlayer.loop(pcm)) {
+            mState = STATE_LOOP;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 在调用线程中生成mCodes的整条消息，设置了缓存时先查找缓存
+     */
+    private byte[] renderCodes(int muteInterval) {
+        MessageCache cache = mMessageCache;
+        if (null != cache) {
+            byte[] pcm = cache.get(mCodes, mEncoder, Common.DEFAULT_GEN_DURATION, muteInterval);
+            if (null != pcm) {
+                return pcm;
+            }
+        }
+
+        mRenderBuffer = new BufferData(mBufferSize);
+        mCapture = new ByteArrayOutputStream();
+        mEncoder.encode(mCodes, Common.DEFAULT_GEN_DURATION, muteInterval);
+        byte[] pcm = mCapture.toByteArray();
+        mCapture = null;
+        mRenderBuffer = null;
+
+        if (null != cache) {
+            cache.put(mCodes, mEncoder, Common.DEFAULT_GEN_DURATION, muteInterval, pcm);
+        }
+        return pcm;
+    }
+
+    private boolean convertBytesToCodes(byte[] data) {
+        if (null != mFec) {
+            if (mFec.getSymbolCount() != mEncoder.getSymbolCount()) {
+                LogHelper.e(TAG, "fec symbol count mismatch");
+                return false;
+            }
+            return mFec.encode(data, mCodes);
+        }
+        return new PayloadCodec(mEncoder.getSymbolCount()).encode(data, mCodes);
+    }
+
+    /**
+     * 打开发送流，之后每次{@link #write(byte[])}的数据立即编码播放，不需要等全部数据准备好<br>
+     * 按当前符号个数每个音携带floor(log2(D - 1))位，接收端需设置{@link SinVoiceRecognition#setStreamListener(SinVoiceRecognition.StreamListener)}；
+     * 流式发送不使用前向纠错
+     * @return 是否打开
+     */
+    public boolean open() {
+        if (STATE_STOP == mState) {
+            mStreamCodec = new StreamCodec(mEncoder.getSymbolCount());
+            mStream = new CodeQueue();
+            mStreamCodes.clear();
+            mStreamCodec.open(mStreamCodes);
+            mStream.put(mStreamCodes);
+            return startPlay(mStream, false, 0);
+        }
+        return false;
+    }
+
+    public boolean write(byte[] data) {
+        return write(data, 0, data.length);
+    }
+
+    /**
+     * 发送一段数据，不足一个音的位留到下次write或close时发送<br>
+     * write和close需在同一个线程中调用
+     * @return 发送流是否已打开
+     */
+    public boolean write(byte[] data, int offset, int count) {
+        if (STATE_START == mState && null != mStream) {
+            mStreamCodes.clear();
+            mStreamCodec.write(data, offset, count, mStreamCodes);
+            mStream.put(mStreamCodes);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 关闭发送流，发送剩余的位和结束标志，不等待播放结束
+     */
+    public void close() {
+        if (STATE_START == mState && null != mStream) {
+            mStreamCodes.clear();
+            mStreamCodec.close(mStreamCodes);
+            mStream.put(mStreamCodes);
+            mStream.end();
+            mStream = null;
+        }
+    }
+
+    private boolean startPlay(final boolean repeat, final int muteInterval) {
+        return startPlay(null, repeat, muteInterval);
+    }
+
+    /**
+     * @param stream 不为null时从中取code，否则使用mCodes
+     * @return 是否开始，线程池拒绝任一阶段时停止已开始的阶段并返回false
+     */
+    private boolean startPlay(final CodeQueue stream, final boolean repeat, final int muteInterval) {
+        // 编码线程以STATE_START判断是否被强制停止，需在线程启动前设置
+        mState = STATE_START;
+
+        mPlayTask = SinVoiceExecutor.submit(mExecutor, new Runnable() {
+            @Override
+            public void run() {
+                mPlayer.start();
             }
+        }, mThreadPriority);
+        if (null == mPlayTask) {
+            LogHelper.e(TAG, "start play task failed");
+            mStream = null;
+            mState = STATE_STOP;
+            return false;
+        }
+
+        mEncodeTask = SinVoiceExecutor.submit(mExecutor, new Runnable() {
+            @Override
+            public void run() {
+                do {
+                    LogHelper.d(TAG, "encode start");
+                    if (null != stream) {
+                        mEncoder.encode(stream, Common.DEFAULT_GEN_DURATION, muteInterval);
+                    } else {
+                        encodeCodes(muteInterval);
+                    }
+                    LogHelper.d(TAG, "encode end");
+
+                    mEncoder.stop();
+                } while (repeat && STATE_PENDING != mState);
+                stopPlayer();
+            }
+        }, mThreadPriority);
+        if (null == mEncodeTask) {
+            LogHelper.e(TAG, "start encode task failed");
+            mStream = null;
+            // 放入结束标志让播放线程退出，之后恢复为STATE_STOP
+            stopPlayer();
+            return false;
+        }
 
-            LogHelper.d(TAG, "play");
-            mState = STATE_START;
+        LogHelper.d(TAG, "play");
+        return true;
+    }
+    /**
+     * 编码mCodes，设置了缓存时先查找缓存，未命中时编码并记录结果
+     */
+    private void encodeCodes(int muteInterval) {
+        MessageCache cache = mMessageCache;
+        if (null == cache) {
+            mEncoder.encode(mCodes, Common.DEFAULT_GEN_DURATION, muteInterval);
+            return;
+        }
+
+        byte[] pcm = cache.get(mCodes, mEncoder, Common.DEFAULT_GEN_DURATION, muteInterval);
+        if (null != pcm) {
+            LogHelper.d(TAG, "message cache hit");
+            putPcm(pcm);
+            return;
+        }
+
+        mCapture = new ByteArrayOutputStream();
+        mEncoder.encode(mCodes, Common.DEFAULT_GEN_DURATION, muteInterval);
+        // 强制停止时消息不完整，不缓存
+        if (STATE_START == mState) {
+            cache.put(mCodes, mEncoder, Common.DEFAULT_GEN_DURATION, muteInterval, mCapture.toByteArray());
+        }
+        mCapture = null;
+    }
+
+    /**
+     * 把缓存的数据按缓冲区大小分段放入播放队列
+     */
+    private void putPcm(byte[] pcm) {
+        int offset = 0;
+        while (offset < pcm.length && STATE_START == mState) {
+            BufferData buffer = mBuffer.getEmpty();
+            if (null == buffer) {
+                LogHelper.e(TAG, "get null buffer");
+                break;
+            }
+            int len = Math.min(buffer.getMaxBufferSize(), pcm.length - offset);
+            System.arraycopy(pcm, offset, buffer.mData, 0, len);
+            buffer.setFilledSize(len);
+            mBuffer.putFull(buffer);
+            offset += len;
         }
     }
+
     /**
-     * 停止编码
+     * 停止编码或循环播放
      */
     public void stop() {
         if (STATE_START == mState) {
@@ -196,17 +567,18 @@ public class SinVoicePlayer implements Encoder.Listener, Encoder.Callback, PcmPl
 
             LogHelper.d(TAG, "force stop start");
             mEncoder.stop();
-            if (null != mEncodeThread) {
-                try {
-                    mEncodeThread.join();
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
-                } finally {
-                    mEncodeThread = null;
-                }
+            if (null != mStream) {
+                // 唤醒等待数据的编码线程
+                mStream.end();
+                mStream = null;
             }
+            SinVoiceExecutor.await(mEncodeTask);
+            mEncodeTask = null;
 
             LogHelper.d(TAG, "force stop end");
+        } else if (STATE_LOOP == mState) {
+            mPlayer.stopLoop();
+            mState = STATE_STOP;
         }
     }
     /**
@@ -220,15 +592,8 @@ public class SinVoicePlayer implements Encoder.Listener, Encoder.Callback, PcmPl
         // put end buffer
         mBuffer.putFull(BufferData.getEmptyBuffer());
 
-        if (null != mPlayThread) {
-            try {
-                mPlayThread.join();
-            } catch (InterruptedException e) {
-                e.printStackTrace();
-            } finally {
-                mPlayThread = null;
-            }
-        }
+        SinVoiceExecutor.await(mPlayTask);
+        mPlayTask = null;
 
         mBuffer.reset();
         mState = STATE_STOP;
@@ -242,12 +607,26 @@ public class SinVoicePlayer implements Encoder.Listener, Encoder.Callback, PcmPl
     @Override
     public void freeEncodeBuffer(BufferData buffer) {
         if (null != buffer) {
+            if (null != mCapture) {
+                capture(buffer);
+            }
+            if (null != mRenderBuffer) {
+                return;
+            }
             mBuffer.putFull(buffer);
         }
     }
 
+    private void capture(BufferData buffer) {
+        mCapture.write(buffer.mData, 0, buffer.getFilledSize());
+    }
+
     @Override
     public BufferData getEncodeBuffer() {
+        if (null != mRenderBuffer) {
+            mRenderBuffer.reset();
+            return mRenderBuffer;
+        }
         return mBuffer.getEmpty();
     }
 
@@ -257,6 +636,10 @@ public class SinVoicePlayer implements Encoder.Listener, Encoder.Callback, PcmPl
 
     @Override
     public BufferData getPlayBuffer() {
+        if (mPlayFed && 0 == mBuffer.getFullCount()) {
+            mMetrics.getUnderruns().inc();
+        }
+        mPlayFed = true;
         return mBuffer.getFull();
     }
 
@@ -267,6 +650,7 @@ public class SinVoicePlayer implements Encoder.Listener, Encoder.Callback, PcmPl
 
     @Override
     public void onPlayStart() {
+        mPlayFed = false;
         if (null != mListener) {
             mListener.onPlayStart();
         }
@@ -279,4 +663,19 @@ public class SinVoicePlayer implements Encoder.Listener, Encoder.Callback, PcmPl
         }
     }
 
+    @Override
+    public void onPlayError() {
+        // 播放线程不再输出，停止编码；队列中的数据由播放线程丢弃，编码线程不会阻塞
+        if (STATE_START == mState) {
+            mState = STATE_PENDING;
+            mEncoder.stop();
+            CodeQueue stream = mStream;
+            if (null != stream) {
+                // 唤醒等待数据的编码线程
+                stream.end();
+                mStream = null;
+            }
+        }
+    }
+
 }
@@ -16,7 +16,12 @@
  */
 package com.libra.sinvoice;
 
-import android.text.TextUtils;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import com.libra.sinvoice.Buffer.BufferData;
 /**
@@ -35,13 +40,46 @@ public class SinVoiceRecognition implements Record.Listener, Record.Callback, Vo
     private Record mRecord;
     private VoiceRecognition mRecognition;
 
-    private Thread mRecordThread;
-    private Thread mRecognitionThread;
+    private ExecutorService mExecutor = SinVoiceExecutor.getDefault();
+    private int mThreadPriority = SinVoiceExecutor.PRIORITY_AUDIO;
+    private Future<?> mRecordTask;
+    private Future<?> mRecognitionTask;
     private int mState;
     private Listener mListener;
+    private SinVoiceMetrics mMetrics = new SinVoiceMetrics();
+    // 识别线程开始处理当前这块数据的时间
+    private long mProcessStartNanos;
+    // 当前这块数据录好的时间，解码文件时与mProcessStartNanos相同
+    private long mBufferReadyNanos;
+    // 收到当前消息开始标志的时间，没有在接收的消息时为0
+    private long mMessageStartNanos;
 
     private String mCodeBook;
     private int mMaxCodeIndex;
+    private boolean mRepeatEscape;
+    // 转义重复字符时上一个收到的字符
+    private char mLastChar;
+    private int mSampleRate;
+    // Record.BITS_8或Record.BITS_16，即每个采样点的字节数
+    private int mBits;
+    private int mBufferCount;
+    private int mBufferSize;
+    // 不为null时从文件而不是录音中取数据
+    private WavReader mFileReader;
+
+    private FecCodec mFec;
+    private FecListener mFecListener;
+    private PayloadCodec mPayloadCodec;
+    private BytesListener mBytesListener;
+    private StreamCodec mStreamCodec;
+    private StreamListener mStreamListener;
+    private ByteArrayOutputStream mStreamData = new ByteArrayOutputStream();
+    // 是否收到了开始标志，当前流中是否出现了无效的音
+    private boolean mStreamOpened;
+    private boolean mStreamBroken;
+    // 使用前向纠错或接收二进制数据时，开始、结束标志之间收到的音
+    private List<Integer> mSymbols = new ArrayList<Integer>();
+    private StringBuilder mText = new StringBuilder();
 
     public static interface Listener {
         void onRecognitionStart();
@@ -51,6 +89,45 @@ public class SinVoiceRecognition implements Record.Listener, Record.Callback, Vo
         void onRecognitionEnd();
     }
 
+    /**
+     * 接收二进制数据，见{@link SinVoicePlayer#play(byte[], boolean, int)}
+     */
+    public static interface BytesListener {
+        /**
+         * 收到结束标志后回调
+         * @param data 收到的数据，无法还原时为null
+         */
+        void onRecognitionBytes(byte[] data);
+    }
+
+    /**
+     * 接收流式发送的数据，见{@link SinVoicePlayer#open()}
+     */
+    public static interface StreamListener {
+        /**
+         * 每收齐一个或几个字节回调
+         * @param data 新收到的数据
+         */
+        void onStreamData(byte[] data);
+
+        /**
+         * 收到结束标志后回调
+         * @param complete 数据是否完整，中间出现无效的音后不再回调数据
+         */
+        void onStreamEnd(boolean complete);
+    }
+
+    /**
+     * 使用前向纠错时，收到结束标志后回调纠错结果
+     */
+    public static interface FecListener {
+        /**
+         * @param success 是否成功，失败时不回调任何字符
+         * @param correctedCount 纠正的域符号个数
+         */
+        void onFecDecode(boolean success, int correctedCount);
+    }
+
     public SinVoiceRecognition() {
         this(Common.DEFAULT_CODE_BOOK);
     }
@@ -60,15 +137,92 @@ public class SinVoiceRecognition implements Record.Listener, Record.Callback, Vo
     }
 
     public SinVoiceRecognition(String codeBook, int sampleRate, int bufferSize, int bufferCount) {
-        mState = STATE_STOP;
-        mBuffer = new Buffer(bufferCount, bufferSize);
+        this(codeBook, sampleRate, bufferSize, bufferCount, VoiceRecognition.DECODER_ZERO_CROSSING);
+    }
+
+    /**
+     * @param decoder 解码方式，见{@link VoiceRecognition#DECODER_ZERO_CROSSING}、{@link VoiceRecognition#DECODER_GOERTZEL}、
+     * {@link VoiceRecognition#DECODER_FFT}
+     */
+    public SinVoiceRecognition(String codeBook, int sampleRate, int bufferSize, int bufferCount, int decoder) {
+        this(codeBook, sampleRate, bufferSize, bufferCount, VoiceRecognition.createDecoder(decoder, sampleRate));
+    }
+
+    /**
+     * @param decoder 自定义的解码器
+     */
+    public SinVoiceRecognition(String codeBook, int sampleRate, int bufferSize, int bufferCount, Decoder decoder) {
+        this(codeBook, sampleRate, bufferSize, bufferCount, decoder, new AudioRecordSource(sampleRate, Record.CHANNEL_1, Record.BITS_16, bufferSize));
+    }
+
+    /**
+     * @param decoder 解码器
+     * @param source 声音输入，如{@link AudioRecordSource}、{@link LoopbackAudio#getSource()}
+     */
+    public SinVoiceRecognition(String codeBook, int sampleRate, int bufferSize, int bufferCount, Decoder decoder, AudioSource source) {
+        this(codeBook, sampleRate, Record.BITS_16, bufferSize, bufferCount, decoder, source, Encoder.getMaxCodeCount());
+    }
+
+    /**
+     * @param bits {@link Record#BITS_16}或{@link Record#BITS_8}，8位为无符号PCM，录音数据量减半；bufferSize仍按字节计
+     */
+    public SinVoiceRecognition(String codeBook, int sampleRate, int bits, int bufferSize, int bufferCount, int decoder) {
+        this(codeBook, sampleRate, bits, bufferSize, bufferCount, VoiceRecognition.createDecoder(decoder, sampleRate),
+                new AudioRecordSource(sampleRate, Record.CHANNEL_1, bits, bufferSize));
+    }
+
+    /**
+     * @param bits {@link Record#BITS_16}或{@link Record#BITS_8}，source需使用相同的格式
+     */
+    public SinVoiceRecognition(String codeBook, int sampleRate, int bits, int bufferSize, int bufferCount, Decoder decoder, AudioSource source) {
+        this(codeBook, sampleRate, bits, bufferSize, bufferCount, decoder, source, Encoder.getMaxCodeCount());
+    }
+
+    /**
+     * 使用频率规划，与{@link SinVoicePlayer#setFrequencyPlan(FrequencyPlan)}使用相同的规划
+     * @param plan 频率规划，采样率取自plan，码本最多plan.getMaxCodeBookLength()个字符
+     * @param decoder 解码方式，音数多时使用{@link VoiceRecognition#DECODER_GOERTZEL}或{@link VoiceRecognition#DECODER_FFT}
+     */
+    public SinVoiceRecognition(String codeBook, FrequencyPlan plan, int bufferSize, int bufferCount, int decoder) {
+        this(codeBook, plan, bufferSize, bufferCount, decoder, new AudioRecordSource(plan.getSampleRate(), Record.CHANNEL_1, Record.BITS_16, bufferSize));
+    }
+
+    public SinVoiceRecognition(String codeBook, FrequencyPlan plan, int bufferSize, int bufferCount, int decoder, AudioSource source) {
+        this(codeBook, plan.getSampleRate(), Record.BITS_16, bufferSize, bufferCount, VoiceRecognition.createDecoder(decoder, plan), source, plan.getToneCount());
+    }
 
-        mRecord = new Record(this, sampleRate, Record.CHANNEL_1, Record.BITS_16, bufferSize);
+    /**
+     * 和弦模式，与{@link SinVoicePlayer#setChordTable(ChordTable)}使用相同的码表
+     * @param table 和弦码表，码本最多table.getSymbolCount() - 2个字符；最高音需在采样率允许的范围内
+     * @throws IllegalArgumentException 码表中有超过0.45倍采样率的音
+     */
+    public SinVoiceRecognition(String codeBook, int sampleRate, int bufferSize, int bufferCount, ChordTable table) {
+        this(codeBook, sampleRate, bufferSize, bufferCount, table, new AudioRecordSource(sampleRate, Record.CHANNEL_1, Record.BITS_16, bufferSize));
+    }
+
+    public SinVoiceRecognition(String codeBook, int sampleRate, int bufferSize, int bufferCount, ChordTable table, AudioSource source) {
+        this(codeBook, sampleRate, Record.BITS_16, bufferSize, bufferCount, new GoertzelDecoder(sampleRate, table), source, table.getSymbolCount());
+    }
+
+    /**
+     * @param symbolCount 解码器输出的符号个数，首尾为开始、结束符号
+     */
+    private SinVoiceRecognition(String codeBook, int sampleRate, int bits, int bufferSize, int bufferCount, Decoder decoder, AudioSource source, int symbolCount) {
+        mState = STATE_STOP;
+        mSampleRate = sampleRate;
+        mBits = bits;
+        mBufferCount = bufferCount;
+        mBufferSize = bufferSize;
+        // 录音线程只生产、识别线程只消费，可以使用无锁队列；16位录音直接读入采样点数组，8位按字节读入
+        mBuffer = new Buffer(bufferCount, bufferSize, SpscRing.WAIT_PARK, (Record.BITS_8 == bits) ? BufferData.STORAGE_HEAP : BufferData.STORAGE_SAMPLES);
+
+        mRecord = new Record(this, source, bufferSize);
         mRecord.setListener(this);
-        mRecognition = new VoiceRecognition(this, sampleRate, Record.CHANNEL_1, Record.BITS_16);
+        mRecognition = new VoiceRecognition(this, sampleRate, Record.CHANNEL_1, bits, decoder);
         mRecognition.setListener(this);
+        mBuffer.setMetrics(mMetrics);
 
-        mMaxCodeIndex = Encoder.getMaxCodeCount() - 2;
+        mMaxCodeIndex = symbolCount - 2;
 
         setCodeBook(codeBook);
     }
@@ -77,34 +231,143 @@ public class SinVoiceRecognition implements Record.Listener, Record.Callback, Vo
         mListener = listener;
     }
 
+    /**
+     * @return 运行统计，见{@link SinVoiceMetrics}
+     */
+    public SinVoiceMetrics getMetrics() {
+        return mMetrics;
+    }
+
+    /**
+     * 设置运行各阶段的线程池，默认为{@link SinVoiceExecutor#getDefault()}，下次开始时生效
+     * @param executor 需能同时运行2个一直阻塞到停止的任务
+     */
+    public void setExecutor(ExecutorService executor) {
+        if (null != executor) {
+            mExecutor = executor;
+        }
+    }
+
+    /**
+     * 设置录音、识别线程的优先级，默认为{@link SinVoiceExecutor#PRIORITY_AUDIO}，下次开始时生效
+     * @param priority 见{@link SinVoiceExecutor#PRIORITY_URGENT_AUDIO}等
+     */
+    public void setThreadPriority(int priority) {
+        mThreadPriority = priority;
+    }
+
+    /**
+     * 每识别出一个音，回调其能量和置信度
+     * @param listener
+     */
+    public void setConfidenceListener(VoiceRecognition.ConfidenceListener listener) {
+        mRecognition.setConfidenceListener(listener);
+    }
+
+    /**
+     * 设置前向纠错，为null时不纠错<br>
+     * 设置后收到的字符不再逐个回调，而是在收到结束标志、纠错完成后一起回调
+     * @param fec 与发送端参数相同
+     */
+    public void setFec(FecCodec fec) {
+        if (null == fec || fec.getSymbolCount() == mMaxCodeIndex + 2) {
+            mFec = fec;
+        } else {
+            LogHelper.e(TAG, "fec symbol count mismatch");
+        }
+    }
+
+    public void setFecListener(FecListener listener) {
+        mFecListener = listener;
+    }
+
+    /**
+     * 设置后按二进制数据接收，不再回调字符，开始、结束仍通过{@link Listener}回调；为null时恢复按文字接收
+     * @param listener
+     */
+    public void setBytesListener(BytesListener listener) {
+        mBytesListener = listener;
+        if (null != listener && null == mPayloadCodec) {
+            mPayloadCodec = new PayloadCodec(mMaxCodeIndex + 2);
+        }
+    }
+
+    /**
+     * 设置后按流式数据接收，优先于{@link #setBytesListener(BytesListener)}，开始、结束仍通过{@link Listener}回调；为null时恢复
+     * @param listener
+     */
+    public void setStreamListener(StreamListener listener) {
+        mStreamListener = listener;
+        if (null != listener && null == mStreamCodec) {
+            mStreamCodec = new StreamCodec(mMaxCodeIndex + 2);
+        }
+    }
+
     /**
      * 设置码本
      * @param codeBook
      */
     public void setCodeBook(String codeBook) {
-        if (!TextUtils.isEmpty(codeBook) && codeBook.length() <= mMaxCodeIndex) {
+        if (null != codeBook && codeBook.length() > 0 && codeBook.length() <= getMaxCodeBookLength()) {
             mCodeBook = codeBook;
         }
     }
 
     /**
-     * 开始接收
+     * 还原发送端转义的相邻重复字符，见{@link SinVoicePlayer#setRepeatEscape(boolean)}
+     * @param escape 为true时码本最多比不转义时少一个字符
+     */
+    public void setRepeatEscape(boolean escape) {
+        if (escape && null != mCodeBook && mCodeBook.length() >= mMaxCodeIndex) {
+            LogHelper.e(TAG, "code book too long for repeat escape");
+        } else {
+            mRepeatEscape = escape;
+        }
+    }
+
+    /**
+     * 录音是否读入直接内存，只能在停止时设置<br>
+     * 为true时AudioRecord在本地把数据写入直接内存，识别时再分段拷贝成采样点；
+     * 默认为false，16位录音直接读入采样点数组，Java端少一次拷贝，见CaptureBenchmark
+     * @param direct
+     */
+    public void setDirectCapture(boolean direct) {
+        if (STATE_STOP == mState) {
+            int storage;
+            if (direct) {
+                storage = BufferData.STORAGE_DIRECT;
+            } else {
+                storage = (Record.BITS_8 == mBits) ? BufferData.STORAGE_HEAP : BufferData.STORAGE_SAMPLES;
+            }
+            mBuffer = new Buffer(mBufferCount, mBufferSize, SpscRing.WAIT_PARK, storage);
+            mBuffer.setMetrics(mMetrics);
+        }
+    }
+
+    private int getMaxCodeBookLength() {
+        return mRepeatEscape ? mMaxCodeIndex - 1 : mMaxCodeIndex;
+    }
+
+    /**
+     * 开始接收，线程池拒绝录音或识别阶段时不开始，仍为停止状态
      */
     public void start() {
         if (STATE_STOP == mState) {
             mState = STATE_PENDING;
 
-            mRecognitionThread = new Thread() {
+            mRecognitionTask = SinVoiceExecutor.submit(mExecutor, new Runnable() {
                 @Override
                 public void run() {
                     mRecognition.start();
                 }
-            };
-            if (null != mRecognitionThread) {
-                mRecognitionThread.start();
+            }, mThreadPriority);
+            if (null == mRecognitionTask) {
+                LogHelper.e(TAG, "start recognition task failed");
+                mState = STATE_STOP;
+                return;
             }
 
-            mRecordThread = new Thread() {
+            mRecordTask = SinVoiceExecutor.submit(mExecutor, new Runnable() {
                 @Override
                 public void run() {
                     mRecord.start();
@@ -115,15 +378,47 @@ public class SinVoiceRecognition implements Record.Listener, Record.Callback, Vo
                     stopRecognition();
                     LogHelper.d(TAG, "stop recognition end");
                 }
-            };
-            if (null != mRecordThread) {
-                mRecordThread.start();
+            }, mThreadPriority);
+            if (null == mRecordTask) {
+                LogHelper.e(TAG, "start record task failed");
+                // 放入结束标志让识别线程退出
+                stopRecognition();
+                mState = STATE_STOP;
+                return;
             }
 
             mState = STATE_START;
         }
     }
 
+    /**
+     * 解码WAV或原始PCM文件<br>
+     * 在调用线程中以内存映射方式读取文件，不按录音速度等待，回调与录音识别时相同。
+     * 文件需为单声道PCM，采样率和位深与构造时的sampleRate、bits一致(8位接收端只能解码8位文件)；原始PCM文件按这两个参数解释。
+     * @param file WAV或原始PCM文件
+     * @return 是否解码了文件
+     */
+    public boolean decodeFile(File file) {
+        boolean ret = false;
+        if (STATE_STOP == mState) {
+            mState = STATE_PENDING;
+
+            WavReader reader = new WavReader(file, mSampleRate, 8 * mBits);
+            if (reader.isValid() && mSampleRate == reader.getSampleRate() && 8 * mBits == reader.getBits()) {
+                mFileReader = reader;
+                mRecognition.start();
+                mFileReader = null;
+                ret = true;
+            } else {
+                LogHelper.e(TAG, "unsupported file, sampleRate:" + reader.getSampleRate() + " channels:" + reader.getChannels() + " bits:" + reader.getBits());
+            }
+            reader.close();
+
+            mState = STATE_STOP;
+        }
+        return ret;
+    }
+
     private void stopRecognition() {
         mRecognition.stop();
 
@@ -131,15 +426,8 @@ public class SinVoiceRecognition implements Record.Listener, Record.Callback, Vo
         BufferData data = new BufferData(0);
         mBuffer.putFull(data);
 
-        if (null != mRecognitionThread) {
-            try {
-                mRecognitionThread.join();
-            } catch (InterruptedException e) {
-                e.printStackTrace();
-            } finally {
-                mRecognitionThread = null;
-            }
-        }
+        SinVoiceExecutor.await(mRecognitionTask);
+        mRecognitionTask = null;
 
         mBuffer.reset();
     }
@@ -150,15 +438,8 @@ public class SinVoiceRecognition implements Record.Listener, Record.Callback, Vo
 
             LogHelper.d(TAG, "force stop start");
             mRecord.stop();
-            if (null != mRecordThread) {
-                try {
-                    mRecordThread.join();
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
-                } finally {
-                    mRecordThread = null;
-                }
-            }
+            SinVoiceExecutor.await(mRecordTask);
+            mRecordTask = null;
 
             mState = STATE_STOP;
             LogHelper.d(TAG, "force stop end");
@@ -177,6 +458,10 @@ public class SinVoiceRecognition implements Record.Listener, Record.Callback, Vo
 
     @Override
     public BufferData getRecordBuffer() {
+        if (0 == mBuffer.getEmptyCount()) {
+            // 识别线程还没有还回数组，录音要等待
+            mMetrics.getOverruns().inc();
+        }
         BufferData buffer = mBuffer.getEmpty();
         if (null == buffer) {
             LogHelper.e(TAG, "get null empty buffer");
@@ -187,6 +472,8 @@ public class SinVoiceRecognition implements Record.Listener, Record.Callback, Vo
     @Override
     public void freeRecordBuffer(BufferData buffer) {
         if (null != buffer) {
+            mMetrics.getRecordReadBytes().record(buffer.getFilledSize());
+            buffer.setTimestampNanos(System.nanoTime());
             if (!mBuffer.putFull(buffer)) {
                 LogHelper.e(TAG, "put full buffer failed");
             }
@@ -195,15 +482,34 @@ public class SinVoiceRecognition implements Record.Listener, Record.Callback, Vo
 
     @Override
     public BufferData getRecognitionBuffer() {
-        BufferData buffer = mBuffer.getFull();
-        if (null == buffer) {
-            LogHelper.e(TAG, "get null full buffer");
+        BufferData buffer;
+        if (null != mFileReader) {
+            buffer = mFileReader.next();
+        } else {
+            buffer = mBuffer.getFull();
+            if (null == buffer) {
+                LogHelper.e(TAG, "get null full buffer");
+            }
+        }
+        mProcessStartNanos = System.nanoTime();
+        if (null == mFileReader && null != buffer && 0 != buffer.getTimestampNanos()) {
+            mBufferReadyNanos = buffer.getTimestampNanos();
+        } else {
+            mBufferReadyNanos = mProcessStartNanos;
         }
         return buffer;
     }
 
     @Override
     public void freeRecognitionBuffer(BufferData buffer) {
+        if (null != buffer) {
+            mMetrics.getProcessNanos().add(System.nanoTime() - mProcessStartNanos);
+            mMetrics.getSamplesProcessed().add(buffer.getFilledSize() / mBits);
+        }
+        if (null != mFileReader) {
+            return;
+        }
+
         if (null != buffer) {
             if (!mBuffer.putEmpty(buffer)) {
                 LogHelper.e(TAG, "put empty buffer failed");
@@ -214,20 +520,151 @@ public class SinVoiceRecognition implements Record.Listener, Record.Callback, Vo
     @Override
     public void onStartRecognition() {
         LogHelper.d(TAG, "start recognition");
+        mMessageStartNanos = 0;
     }
 
     @Override
     public void onRecognition(int index) {
-        LogHelper.d(TAG, "recognition:" + index);
-        if (null != mListener) {
+        Tracer.trace(Tracer.EVENT_RECOGNIZE_SYMBOL, index, 0);
+        mMetrics.getSymbolsRecognized().inc();
+        if (null != mStreamListener) {
+            onStreamRecognition(index);
+        } else if (null != mFec || null != mBytesListener) {
+            onMessageRecognition(index);
+        } else if (null != mListener) {
             if (Common.START_TOKEN == index) {
+                mLastChar = 0;
+                mMessageStartNanos = System.nanoTime();
                 mListener.onRecognitionStart();
-            } else if (Common.STOP_TOKEN == index) {
+            } else if (mMaxCodeIndex + 1 == index) {
+                // 结束标志
                 mListener.onRecognitionEnd();
-            } else if (index > 0 && index <= mMaxCodeIndex) {
+                onMessageEnd(true, 0);
+            } else if (mRepeatEscape && mMaxCodeIndex == index) {
+                // 重复符号，重复上一个字符
+                if (0 != mLastChar) {
+                    mListener.onRecognition(mLastChar);
+                } else {
+                    mMetrics.getSymbolsRejected().inc();
+                }
+            } else if (index > 0 && index <= mCodeBook.length()) {
             	// 根据在码本中的位置，获取字符
-                mListener.onRecognition(mCodeBook.charAt(index - 1));
+                mLastChar = mCodeBook.charAt(index - 1);
+                mListener.onRecognition(mLastChar);
+            } else {
+                mMetrics.getSymbolsRejected().inc();
+            }
+        }
+    }
+
+    private void onMessageRecognition(int index) {
+        if (Common.START_TOKEN == index) {
+            mSymbols.clear();
+            mMessageStartNanos = System.nanoTime();
+            if (null != mListener) {
+                mListener.onRecognitionStart();
+            }
+        } else if (mMaxCodeIndex + 1 == index) {
+            if (null != mBytesListener) {
+                onBytesEnd();
+                return;
+            }
+
+            mText.setLength(0);
+            boolean success = mFec.decode(mCodeBook, mSymbols, mText);
+            int symbolCount = mSymbols.size();
+            mSymbols.clear();
+            if (null != mFecListener) {
+                mFecListener.onFecDecode(success, mFec.getLastCorrectedCount());
+            }
+            if (null != mListener) {
+                for (int i = 0; i < mText.length(); ++i) {
+                    mListener.onRecognition(mText.charAt(i));
+                }
+                mListener.onRecognitionEnd();
+            }
+            onMessageEnd(success, symbolCount);
+        } else if (index > 0) {
+            mSymbols.add(index);
+        }
+    }
+
+    private void onStreamRecognition(int index) {
+        if (Common.START_TOKEN == index) {
+            mStreamCodec.reset();
+            mStreamOpened = true;
+            mMessageStartNanos = System.nanoTime();
+            mStreamBroken = false;
+            if (null != mListener) {
+                mListener.onRecognitionStart();
             }
+        } else if (mStreamOpened) {
+            // 没有收到开始标志时忽略
+            if (mMaxCodeIndex + 1 == index) {
+                mStreamOpened = false;
+                boolean complete = !mStreamBroken && mStreamCodec.finish(mStreamData);
+                flushStreamData();
+                mStreamListener.onStreamEnd(complete);
+                if (null != mListener) {
+                    mListener.onRecognitionEnd();
+                }
+                onMessageEnd(complete, 0);
+            } else if (!mStreamBroken) {
+                if (mStreamCodec.decode(index, mStreamData)) {
+                    flushStreamData();
+                } else {
+                    mStreamBroken = true;
+                    mMetrics.getSymbolsRejected().inc();
+                }
+            } else {
+                mMetrics.getSymbolsRejected().inc();
+            }
+        }
+    }
+
+    private void flushStreamData() {
+        if (mStreamData.size() > 0) {
+            mStreamListener.onStreamData(mStreamData.toByteArray());
+            mStreamData.reset();
+        }
+    }
+
+    private void onBytesEnd() {
+        byte data[];
+        if (null != mFec) {
+            data = mFec.decode(mSymbols);
+            if (null != mFecListener) {
+                mFecListener.onFecDecode(null != data, mFec.getLastCorrectedCount());
+            }
+        } else {
+            data = mPayloadCodec.decode(mSymbols);
+        }
+        int symbolCount = mSymbols.size();
+        mSymbols.clear();
+
+        mBytesListener.onRecognitionBytes(data);
+        if (null != mListener) {
+            mListener.onRecognitionEnd();
+        }
+        onMessageEnd(null != data, symbolCount);
+    }
+
+    /**
+     * 一条消息结束，在处理含结束标志的那块数据时调用
+     * @param rejectedCount 失败时没有用上的音的个数
+     */
+    private void onMessageEnd(boolean success, int rejectedCount) {
+        if (success) {
+            mMetrics.getMessagesDecoded().inc();
+        } else {
+            mMetrics.getMessagesFailed().inc();
+            mMetrics.getSymbolsRejected().add(rejectedCount);
+        }
+        long now = System.nanoTime();
+        mMetrics.getDecodeLatencyNanos().record(now - mBufferReadyNanos);
+        if (0 != mMessageStartNanos) {
+            mMetrics.getMessageDurationNanos().record(now - mMessageStartNanos);
+            mMessageStartNanos = 0;
         }
     }
 
@@ -0,0 +1,229 @@
+/*
+ * Copyright (C) 2013 gujicheng
+ * 
+ * Licensed under the GPL License Version 2.0;
+ * you may not use this file except in compliance with the License.
+ * 
+ * If you have any question, please contact me.
+ * 
+ *************************************************************************
+ **                   Author information                                **
+ *************************************************************************
+ ** Email: gujicheng197@126.com                                         **
+ ** QQ   : 29600731                                                     **
+ ** Weibo: http://weibo.com/gujicheng197                                **
+ *************************************************************************
+ */
+package com.libra.sinvoice;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.libra.sinvoice.Buffer.BufferData;
+
+/**
+ * 离线生成端<br>
+ * <p>与SinVoicePlayer使用同样的Encoder和SinGenerator，但不经过PcmPlayer播放，
+ * 在调用线程中直接把生成的数据写入{@link WavWriter}，不依赖音频设备，也不按实时速度等待。</p>
+ * <p>不是线程安全的，多线程生成时每个线程使用自己的实例。</p>
+ */
+public class SinVoiceRenderer implements Encoder.Callback {
+    private final static String TAG = "SinVoiceRenderer";
+
+    private String mCodeBook;
+    private List<Integer> mCodes = new ArrayList<Integer>();
+    private FecCodec mFec;
+    private boolean mRepeatEscape;
+    private int mSampleRate;
+    private int mBits;
+
+    private Encoder mEncoder;
+    private BufferData mBufferData;
+    private WavWriter mWriter;
+    private boolean mWriteOk;
+
+    public SinVoiceRenderer() {
+        this(Common.DEFAULT_CODE_BOOK);
+    }
+
+    public SinVoiceRenderer(String codeBook) {
+        this(codeBook, Common.DEFAULT_SAMPLE_RATE, Common.DEFAULT_BUFFER_SIZE);
+    }
+
+    public SinVoiceRenderer(String codeBook, int sampleRate, int bufferSize) {
+        this(codeBook, sampleRate, SinGenerator.BITS_16, bufferSize);
+    }
+
+    /**
+     * @param bits {@link SinGenerator#BITS_16}或{@link SinGenerator#BITS_8}，8位时生成8位无符号的WAV
+     */
+    public SinVoiceRenderer(String codeBook, int sampleRate, int bits, int bufferSize) {
+        mSampleRate = sampleRate;
+        mBits = 8 * SinGenerator.getBytesPerSample(bits);
+        mEncoder = new Encoder(this, sampleRate, bits, bufferSize);
+        mBufferData = new BufferData(bufferSize);
+
+        setCodeBook(codeBook);
+    }
+
+    /**
+     * 使用频率规划生成的音，为null时恢复原有的7个音<br>
+     * 规划的音更多时码本可以更长，需要在设置更长的码本之前调用
+     * @param plan 采样率需与播放采样率相同
+     */
+    public void setFrequencyPlan(FrequencyPlan plan) {
+        mEncoder.setFrequencyPlan(plan);
+    }
+
+    /**
+     * 按接收端解码器计算每个音的时长，代替固定的{@link Common#DEFAULT_GEN_DURATION}；为null时恢复固定时长
+     * @param timing
+     */
+    public void setSymbolTiming(SymbolTiming timing) {
+        mEncoder.setSymbolTiming(timing);
+    }
+
+    /**
+     * 设置前向纠错，为null时不纠错；接收端需设置相同参数的{@link FecCodec}
+     * @param fec 符号个数需与当前的频率规划或和弦码表相同
+     */
+    public void setFec(FecCodec fec) {
+        mFec = fec;
+    }
+
+    /**
+     * 和弦模式，每个字符同时发出多个音；为null时恢复单音<br>
+     * 和弦码表的符号更多，需要在设置更长的码本之前调用
+     * @param table 最高音需在采样率允许的范围内，见{@link ChordTable#createDefault(int)}
+     * @throws IllegalArgumentException 码表中有超过0.45倍采样率的音
+     */
+    public void setChordTable(ChordTable table) {
+        mEncoder.setChordTable(table);
+    }
+
+    /**
+     * 转义相邻的重复字符，码本中的文字可以任意组合，接收端需设置{@link SinVoiceRecognition#setRepeatEscape(boolean)}<br>
+     * 最后一个数据音用作重复符号，码本需比不转义时少一个字符；使用前向纠错时不需要转义
+     * @param escape
+     */
+    public void setRepeatEscape(boolean escape) {
+        mRepeatEscape = escape;
+    }
+
+    public void setCodeBook(String codeBook) {
+        if (null != codeBook && codeBook.length() > 0 && codeBook.length() < mEncoder.getSymbolCount() - 1) {
+            mCodeBook = codeBook;
+        }
+    }
+
+    /**
+     * 生成一段声音写入writer，writer需已open
+     * @param text 发送的文字
+     * @param muteInterval 声音结束后静音的时长
+     * @return 是否成功
+     */
+    public boolean render(String text, int muteInterval, WavWriter writer) {
+        boolean converted;
+        if (null != mFec) {
+            converted = mFec.getSymbolCount() == mEncoder.getSymbolCount() && mFec.encode(mCodeBook, text, mCodes);
+        } else {
+            converted = Encoder.convertTextToCodes(mCodeBook, text, mCodes, mEncoder.getSymbolCount(), mRepeatEscape);
+        }
+        if (!converted) {
+            return false;
+        }
+        return renderCodes(muteInterval, writer);
+    }
+
+    /**
+     * 生成一段二进制数据的声音写入writer，见{@link SinVoicePlayer#play(byte[], boolean, int)}
+     * @param data 发送的二进制数据
+     * @param muteInterval 声音结束后静音的时长
+     * @return 是否成功
+     */
+    public boolean render(byte[] data, int muteInterval, WavWriter writer) {
+        boolean converted;
+        if (null != mFec) {
+            converted = mFec.getSymbolCount() == mEncoder.getSymbolCount() && mFec.encode(data, mCodes);
+        } else {
+            converted = new PayloadCodec(mEncoder.getSymbolCount()).encode(data, mCodes);
+        }
+        if (!converted) {
+            return false;
+        }
+        return renderCodes(muteInterval, writer);
+    }
+
+    private boolean renderCodes(int muteInterval, WavWriter writer) {
+        mWriter = writer;
+        mWriteOk = true;
+        mEncoder.encode(mCodes, Common.DEFAULT_GEN_DURATION, muteInterval);
+        mWriter = null;
+        return mWriteOk;
+    }
+
+    /**
+     * 生成WAV文件
+     */
+    public boolean renderToFile(String text, int muteInterval, File file) {
+        RandomAccessFile raf = null;
+        try {
+            raf = new RandomAccessFile(file, "rw");
+            raf.setLength(0);
+            WavWriter writer = new WavWriter(raf.getChannel(), mSampleRate, mBits, true);
+            return writer.open() && render(text, muteInterval, writer) && writer.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+            LogHelper.e(TAG, "open file error");
+            return false;
+        } finally {
+            if (null != raf) {
+                try {
+                    raf.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /**
+     * 生成WAV数据
+     * @return 失败时返回null
+     */
+    public byte[] renderToWav(String text, int muteInterval) {
+        WavWriter writer = new WavWriter(mSampleRate, mBits, true);
+        if (writer.open() && render(text, muteInterval, writer) && writer.close()) {
+            return writer.toByteArray();
+        }
+        return null;
+    }
+
+    /**
+     * 生成二进制数据的WAV数据
+     * @return 失败时返回null
+     */
+    public byte[] renderToWav(byte[] data, int muteInterval) {
+        WavWriter writer = new WavWriter(mSampleRate, mBits, true);
+        if (writer.open() && render(data, muteInterval, writer) && writer.close()) {
+            return writer.toByteArray();
+        }
+        return null;
+    }
+
+    @Override
+    public BufferData getEncodeBuffer() {
+        mBufferData.reset();
+        return mBufferData;
+    }
+
+    @Override
+    public void freeEncodeBuffer(BufferData buffer) {
+        if (null != buffer && null != mWriter && mWriteOk) {
+            mWriteOk = mWriter.write(buffer);
+        }
+    }
+}
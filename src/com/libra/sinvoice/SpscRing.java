@@ -0,0 +1,171 @@
+/*
+ * Copyright (C) 2013 gujicheng
+ * 
+ * Licensed under the GPL License Version 2.0;
+ * you may not use this file except in compliance with the License.
+ * 
+ * If you have any question, please contact me.
+ * 
+ *************************************************************************
+ **                   Author information                                **
+ *************************************************************************
+ ** Email: gujicheng197@126.com                                         **
+ ** QQ   : 29600731                                                     **
+ ** Weibo: http://weibo.com/gujicheng197                                **
+ *************************************************************************
+ */
+package com.libra.sinvoice;
+
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 单生产者/单消费者无锁环形队列<br>
+ * 只允许一个线程放入、一个线程取出。读写序号分别放在填充过的对象中，避免两个线程的序号落在同一缓存行。
+ * 队列空或满时按等待策略等待：{@link #WAIT_SPIN}忙等（只适合多核），{@link #WAIT_YIELD}让出CPU，
+ * {@link #WAIT_PARK}先忙等、再让出、最后逐渐加长park时间。
+ */
+public class SpscRing<T> implements Buffer.HandoffQueue<T> {
+    public final static int WAIT_SPIN = 1;
+    public final static int WAIT_YIELD = 2;
+    public final static int WAIT_PARK = 3;
+
+    private final static int SPIN_TRIES = 100;
+    private final static int YIELD_TRIES = 200;
+    private final static long MIN_PARK_NANOS = 50 * 1000;
+    private final static long MAX_PARK_NANOS = 2 * 1000 * 1000;
+
+    private final Object[] mSlots;
+    private final int mMask;
+    // 最多容纳的元素个数，与LinkedBlockingQueue的容量含义相同；槽位数取不小于它的2的幂以便按位取下标
+    private final int mCapacity;
+    private final int mWaitStrategy;
+    // 消费者读取的位置
+    private final Sequence mHead = new Sequence();
+    // 生产者写入的位置
+    private final Sequence mTail = new Sequence();
+
+    @SuppressWarnings("unused")
+    static class LeftPadding {
+        protected long p1, p2, p3, p4, p5, p6, p7;
+    }
+
+    static class Value extends LeftPadding {
+        protected volatile long mValue;
+    }
+
+    @SuppressWarnings("unused")
+    static final class Sequence extends Value {
+        private static final AtomicLongFieldUpdater<Value> UPDATER = AtomicLongFieldUpdater.newUpdater(Value.class, "mValue");
+
+        protected long p9, p10, p11, p12, p13, p14, p15;
+
+        long get() {
+            return mValue;
+        }
+
+        // 只有一个线程写，不需要CAS，有序写即可
+        void lazySet(long value) {
+            UPDATER.lazySet(this, value);
+        }
+    }
+
+    /**
+     * @param capacity 最多容纳的元素个数，队列中已有这么多时offer失败、put等待
+     * @param waitStrategy {@link #WAIT_SPIN}、{@link #WAIT_YIELD} 或 {@link #WAIT_PARK}
+     */
+    public SpscRing(int capacity, int waitStrategy) {
+        int size = 1;
+        while (size < capacity) {
+            size <<= 1;
+        }
+        mSlots = new Object[size];
+        mMask = size - 1;
+        mCapacity = capacity;
+        mWaitStrategy = waitStrategy;
+    }
+
+    @Override
+    public boolean offer(T e) {
+        long tail = mTail.get();
+        if (tail - mHead.get() >= mCapacity) {
+            return false;
+        }
+        mSlots[(int) tail & mMask] = e;
+        mTail.lazySet(tail + 1);
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public T poll() {
+        long head = mHead.get();
+        if (head >= mTail.get()) {
+            return null;
+        }
+        int index = (int) head & mMask;
+        T e = (T) mSlots[index];
+        mSlots[index] = null;
+        mHead.lazySet(head + 1);
+        return e;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public T peek() {
+        long head = mHead.get();
+        if (head >= mTail.get()) {
+            return null;
+        }
+        return (T) mSlots[(int) head & mMask];
+    }
+
+    @Override
+    public void put(T e) throws InterruptedException {
+        int counter = 0;
+        while (!offer(e)) {
+            idle(counter++);
+        }
+    }
+
+    @Override
+    public T take() throws InterruptedException {
+        int counter = 0;
+        T e;
+        while (null == (e = poll())) {
+            idle(counter++);
+        }
+        return e;
+    }
+
+    @Override
+    public int size() {
+        return (int) (mTail.get() - mHead.get());
+    }
+
+    private void idle(int counter) throws InterruptedException {
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+
+        switch (mWaitStrategy) {
+        case WAIT_SPIN:
+            break;
+
+        case WAIT_YIELD:
+            Thread.yield();
+            break;
+
+        default:
+            if (counter < SPIN_TRIES) {
+                break;
+            } else if (counter < SPIN_TRIES + YIELD_TRIES) {
+                Thread.yield();
+            } else {
+                int shift = Math.min(counter - SPIN_TRIES - YIELD_TRIES, 6);
+                LockSupport.parkNanos(Math.min(MIN_PARK_NANOS << shift, MAX_PARK_NANOS));
+            }
+            break;
+        }
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright (C) 2013 gujicheng
+ * 
+ * Licensed under the GPL License Version 2.0;
+ * you may not use this file except in compliance with the License.
+ * 
+ * If you have any question, please contact me.
+ * 
+ *************************************************************************
+ **                   Author information                                **
+ *************************************************************************
+ ** Email: gujicheng197@126.com                                         **
+ ** QQ   : 29600731                                                     **
+ ** Weibo: http://weibo.com/gujicheng197                                **
+ *************************************************************************
+ */
+package com.libra.sinvoice;
+
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+
+/**
+ * 流式二进制数据编码<br>
+ * 与{@link PayloadCodec}不同，不需要事先知道全部数据：每个音携带floor(log2(D - 1))位(D为数据音个数)，
+ * 攒够一个音的位数就输出，相邻的音按差分编码不会相同。
+ * 结束时在数据后加一个1再补0到整个音，接收端据此去掉补齐的位。<br>
+ * 发送和接收的状态分开保存，同一实例可以同时用于一个发送流和一个接收流，但都不是线程安全的。
+ */
+public class StreamCodec {
+    private final static String TAG = "StreamCodec";
+
+    // 开始、结束音加至少3个数据音
+    private final static int MIN_SYMBOL_COUNT = 5;
+
+    private int mSymbolCount;
+    private int mDataSymbolCount;
+    private int mDigitBits;
+
+    // 发送
+    private long mEncodeBits;
+    private int mEncodeBitCount;
+    private int mEncodeOffset;
+
+    // 接收
+    private long mDecodeBits;
+    private int mDecodeBitCount;
+    private int mDecodePrev;
+
+    /**
+     * @param symbolCount 符号个数，与{@link Encoder#getSymbolCount()}相同
+     */
+    public StreamCodec(int symbolCount) {
+        if (symbolCount < MIN_SYMBOL_COUNT) {
+            throw new IllegalArgumentException("too few symbols:" + symbolCount);
+        }
+        mSymbolCount = symbolCount;
+        mDataSymbolCount = symbolCount - 2;
+        // 差分编码时可用D - 1个数字
+        int digits = mDataSymbolCount - 1;
+        while ((1 << (mDigitBits + 1)) <= digits) {
+            ++mDigitBits;
+        }
+    }
+
+    public int getSymbolCount() {
+        return mSymbolCount;
+    }
+
+    /**
+     * @return 每个音携带的位数
+     */
+    public int getDigitBits() {
+        return mDigitBits;
+    }
+
+    /**
+     * 开始发送
+     * @param codes 输出开始标志
+     */
+    public void open(List<Integer> codes) {
+        mEncodeBits = 0;
+        mEncodeBitCount = 0;
+        mEncodeOffset = mDataSymbolCount - 1;
+        codes.add(Common.START_TOKEN);
+    }
+
+    /**
+     * 编码一段数据，不足一个音的位留到下次
+     * @param codes 追加编码结果
+     */
+    public void write(byte[] data, int offset, int count, List<Integer> codes) {
+        for (int i = offset; i < offset + count; ++i) {
+            mEncodeBits = (mEncodeBits << 8) | (data[i] & 0xff);
+            mEncodeBitCount += 8;
+            flushDigits(codes);
+        }
+    }
+
+    /**
+     * 结束发送，输出剩余的位、补齐位和结束标志
+     * @param codes 追加编码结果
+     */
+    public void close(List<Integer> codes) {
+        // 结束位1，再补0到整个音
+        mEncodeBits = (mEncodeBits << 1) | 1;
+        ++mEncodeBitCount;
+        int pad = (mDigitBits - mEncodeBitCount % mDigitBits) % mDigitBits;
+        mEncodeBits <<= pad;
+        mEncodeBitCount += pad;
+        flushDigits(codes);
+
+        codes.add(mSymbolCount - 1);
+    }
+
+    private void flushDigits(List<Integer> codes) {
+        while (mEncodeBitCount >= mDigitBits) {
+            mEncodeBitCount -= mDigitBits;
+            int digit = (int) (mEncodeBits >> mEncodeBitCount) & ((1 << mDigitBits) - 1);
+            mEncodeBits &= (1L << mEncodeBitCount) - 1;
+
+            mEncodeOffset = (mEncodeOffset + 1 + digit) % mDataSymbolCount;
+            codes.add(mEncodeOffset + 1);
+        }
+    }
+
+    /**
+     * 收到开始标志时调用
+     */
+    public void reset() {
+        mDecodeBits = 0;
+        mDecodeBitCount = 0;
+        mDecodePrev = mDataSymbolCount - 1;
+    }
+
+    /**
+     * 解码一个音，确定不是补齐位的字节写入out
+     * @param symbol 开始、结束标志之间收到的音
+     * @return 音是否有效
+     */
+    public boolean decode(int symbol, ByteArrayOutputStream out) {
+        if (symbol < 1 || symbol > mDataSymbolCount) {
+            LogHelper.d(TAG, "invalid symbol:" + symbol);
+            return false;
+        }
+        int cur = symbol - 1;
+        int digit = (cur - mDecodePrev - 1 + mDataSymbolCount) % mDataSymbolCount;
+        if (digit >= (1 << mDigitBits)) {
+            LogHelper.d(TAG, "invalid digit:" + digit);
+            return false;
+        }
+        mDecodePrev = cur;
+        mDecodeBits = (mDecodeBits << mDigitBits) | digit;
+        mDecodeBitCount += mDigitBits;
+
+        // 结束位和补齐位不超过一个音，后面还有多于一个音的位时，前面的字节一定是数据
+        while (mDecodeBitCount > 8 + mDigitBits) {
+            mDecodeBitCount -= 8;
+            out.write((int) (mDecodeBits >> mDecodeBitCount) & 0xff);
+            mDecodeBits &= (1L << mDecodeBitCount) - 1;
+        }
+        return true;
+    }
+
+    /**
+     * 收到结束标志时调用，去掉结束位和补齐位，剩余的字节写入out
+     * @return 数据是否完整
+     */
+    public boolean finish(ByteArrayOutputStream out) {
+        int pad = 0;
+        while (pad < mDecodeBitCount && 0 == ((mDecodeBits >> pad) & 1)) {
+            ++pad;
+        }
+        if (pad >= mDecodeBitCount || pad >= mDigitBits) {
+            LogHelper.d(TAG, "invalid end bits");
+            return false;
+        }
+        int bits = mDecodeBitCount - pad - 1;
+        if (0 != bits % 8) {
+            LogHelper.d(TAG, "invalid length bits:" + bits);
+            return false;
+        }
+        for (int i = bits - 8; i >= 0; i -= 8) {
+            out.write((int) (mDecodeBits >> (pad + 1 + i)) & 0xff);
+        }
+        return true;
+    }
+}
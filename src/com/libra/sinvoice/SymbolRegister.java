@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2013 gujicheng
+ * 
+ * Licensed under the GPL License Version 2.0;
+ * you may not use this file except in compliance with the License.
+ * 
+ * If you have any question, please contact me.
+ * 
+ *************************************************************************
+ **                   Author information                                **
+ *************************************************************************
+ ** Email: gujicheng197@126.com                                         **
+ ** QQ   : 29600731                                                     **
+ ** Weibo: http://weibo.com/gujicheng197                                **
+ *************************************************************************
+ */
+package com.libra.sinvoice;
+
+/**
+ * 按块判决的解码器共用的确认逻辑<br>
+ * 连续mMinCount个块判决为同一个音才确认；确认开始音之前忽略其他音；
+ * 与上一个确认的音相同时不重复回调，除非中间已连续mMinCount个块不是该音(中间的音没能确认，如X Y X中丢失了Y)；
+ * 确认结束音后重新等待开始音。
+ */
+final class SymbolRegister {
+    private final static String TAG = "SymbolRegister";
+
+    private int mStartIndex;
+    private int mStopIndex;
+    private int mMinCount;
+    private Decoder.Listener mListener;
+
+    private boolean mIsBeginning;
+    private int mRegIndex;
+    private int mRegCount;
+    private float mRegEnergy;
+    private float mRegConfidence;
+    private int mPreRegIndex;
+    // 上次确认后连续不是该音的块数
+    private int mGapCount;
+    // 上次确认后出现过足够长的间隔，可以再次确认同一个音
+    private boolean mSeparated;
+
+    public SymbolRegister(int startIndex, int stopIndex, int minCount) {
+        mStartIndex = startIndex;
+        mStopIndex = stopIndex;
+        mMinCount = minCount;
+        reset();
+    }
+
+    public void setListener(Decoder.Listener listener) {
+        mListener = listener;
+    }
+
+    public void reset() {
+        mIsBeginning = false;
+        mRegIndex = -1;
+        mRegCount = 0;
+        mPreRegIndex = -1;
+        mGapCount = 0;
+        mSeparated = false;
+    }
+
+    /**
+     * @param index 本块判决出的音，-1为没有可信的音
+     */
+    public void reg(int index, float energy, float confidence) {
+        if (index == mPreRegIndex) {
+            if (mGapCount >= mMinCount) {
+                mSeparated = true;
+            }
+            mGapCount = 0;
+        } else if (mGapCount < mMinCount) {
+            ++mGapCount;
+        }
+
+        if (index != mRegIndex) {
+            mRegIndex = index;
+            mRegCount = 0;
+            mRegEnergy = 0;
+            mRegConfidence = 0;
+        }
+        if (index < 0) {
+            return;
+        }
+
+        ++mRegCount;
+        mRegEnergy += energy;
+        mRegConfidence += confidence;
+        if (mMinCount != mRegCount) {
+            return;
+        }
+
+        if (!mIsBeginning) {
+            // 等待开始音
+            if (mStartIndex == index) {
+                mIsBeginning = true;
+                mPreRegIndex = -1;
+            } else {
+                return;
+            }
+        }
+
+        if (index != mPreRegIndex || mSeparated) {
+            if (null != mListener) {
+                mListener.onDecode(index, mRegEnergy / mRegCount, mRegConfidence / mRegCount);
+            }
+            mPreRegIndex = index;
+            mGapCount = 0;
+            mSeparated = false;
+
+            if (mStopIndex == index) {
+                mIsBeginning = false;
+                LogHelper.d(TAG, "stop token, wait for next start");
+            }
+        }
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2013 gujicheng
+ * 
+ * Licensed under the GPL License Version 2.0;
+ * you may not use this file except in compliance with the License.
+ * 
+ * If you have any question, please contact me.
+ * 
+ *************************************************************************
+ **                   Author information                                **
+ *************************************************************************
+ ** Email: gujicheng197@126.com                                         **
+ ** QQ   : 29600731                                                     **
+ ** Weibo: http://weibo.com/gujicheng197                                **
+ *************************************************************************
+ */
+package com.libra.sinvoice;
+
+/**
+ * 按音计算时长<br>
+ * 每个音的时长取接收端解码器能确认该音的最短时长({@link Decoder#getMinSymbolDuration(int, int)})，再乘以(1 + 余量)。
+ * 过零点解码按周期数确认，高频音只需几毫秒；块判决的解码器与频率无关，约25~30ms。
+ * 都比固定的{@link Common#DEFAULT_GEN_DURATION}短得多，余量用来容忍录音延迟抖动和多径。
+ */
+public class SymbolTiming {
+    public final static float DEFAULT_MARGIN = 0.5f;
+
+    private Decoder mDecoder;
+    private float mMargin;
+
+    public SymbolTiming(Decoder decoder) {
+        this(decoder, DEFAULT_MARGIN);
+    }
+
+    /**
+     * @param decoder 与接收端相同类型、相同参数的解码器，只用来计算时长
+     * @param margin 余量，0.5即比最短时长长50%
+     */
+    public SymbolTiming(Decoder decoder, float margin) {
+        mDecoder = decoder;
+        mMargin = margin;
+    }
+
+    public float getMargin() {
+        return mMargin;
+    }
+
+    /**
+     * @param index 音的位置
+     * @param frequency 音的频率，和弦为其中最低的频率
+     * @return 时长(ms)
+     */
+    public int getDuration(int index, int frequency) {
+        return (int) Math.ceil(mDecoder.getMinSymbolDuration(index, frequency) * (1 + mMargin));
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2013 gujicheng
+ * 
+ * Licensed under the GPL License Version 2.0;
+ * you may not use this file except in compliance with the License.
+ * 
+ * If you have any question, please contact me.
+ * 
+ *************************************************************************
+ **                   Author information                                **
+ *************************************************************************
+ ** Email: gujicheng197@126.com                                         **
+ ** QQ   : 29600731                                                     **
+ ** Weibo: http://weibo.com/gujicheng197                                **
+ *************************************************************************
+ */
+package com.libra.sinvoice;
+
+/**
+ * 相位累加 + 正弦查表振荡器<br>
+ * 相位为32位定点数，一个周期对应2^32，溢出即回绕；高10位为表下标，其后16位用于线性插值。
+ * 内循环只有整数运算，没有三角函数调用。
+ */
+public class TableOscillator implements Oscillator {
+    private final static int TABLE_BITS = 10;
+    private final static int TABLE_SIZE = 1 << TABLE_BITS;
+    private final static int INDEX_SHIFT = 32 - TABLE_BITS;
+    private final static int FRACTION_SHIFT = INDEX_SHIFT - 16;
+    private final static int Q15 = 32767;
+
+    // 多一项，插值时不用取模
+    private final static int[] SIN_TABLE = new int[TABLE_SIZE + 1];
+
+    static {
+        for (int i = 0; i <= TABLE_SIZE; ++i) {
+            SIN_TABLE[i] = (int) Math.round(Math.sin(2 * Math.PI * i / TABLE_SIZE) * Q15);
+        }
+    }
+
+    private int mPhase;
+    private int mStep;
+
+    @Override
+    public void reset(int genRate, int sampleRate) {
+        // 2^32 * genRate / sampleRate，超过int范围的部分自然回绕
+        mStep = (int) ((((long) genRate) << 32) / sampleRate);
+        mPhase = 0;
+    }
+
+    @Override
+    public int next(int amplitude) {
+        int index = mPhase >>> INDEX_SHIFT;
+        int fraction = (mPhase >>> FRACTION_SHIFT) & 0xffff;
+        int s0 = SIN_TABLE[index];
+        int v = s0 + (((SIN_TABLE[index + 1] - s0) * fraction) >> 16);
+        mPhase += mStep;
+        return (v * amplitude) >> 15;
+    }
+
+    @Override
+    public Oscillator newInstance() {
+        return new TableOscillator();
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright (C) 2013 gujicheng
+ * 
+ * Licensed under the GPL License Version 2.0;
+ * you may not use this file except in compliance with the License.
+ * 
+ * If you have any question, please contact me.
+ * 
+ *************************************************************************
+ **                   Author information                                **
+ *************************************************************************
+ ** Email: gujicheng197@126.com                                         **
+ ** QQ   : 29600731                                                     **
+ ** Weibo: http://weibo.com/gujicheng197                                **
+ *************************************************************************
+ */
+package com.libra.sinvoice;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 二进制事件跟踪<br>
+ * 编码、播放、录音、识别线程中每个音、每块数据都要记录的地方不用LogHelper拼字符串，
+ * 而是把(时间, 事件, 两个int参数)写入预先分配的环形缓冲区，写满后覆盖最早的事件，需要时再导出到文件。<br>
+ * 默认关闭，关闭时trace只读两次volatile变量；打开后记录不加锁、不分配内存，多个线程同时写入时事件顺序以序号为准。<br>
+ * 每种事件有一个级别，与LogHelper.LEVEL_*相同：每块数据一次的为VERBOSE，每个音一次的为DEBUG，每条消息一次的为INFO，
+ * 低于{@link #setLevel(int)}的事件在访问缓冲区之前就返回。
+ */
+public final class Tracer {
+    private final static String TAG = "Tracer";
+
+    public final static int DEFAULT_CAPACITY = 8192;
+
+    // 文件格式：MAGIC、VERSION、事件个数，之后每个事件为long时间(ns)、int事件、int参数1、int参数2，均为大端
+    public final static int MAGIC = 0x53565452;
+    public final static int VERSION = 1;
+
+    // 编码一个音，参数为code和默认时长(ms)，实际时长见EVENT_GEN_TONE
+    public final static int EVENT_ENCODE_SYMBOL = 1;
+    // 生成一个音，参数为频率(和弦为第一个音)和时长(ms)
+    public final static int EVENT_GEN_TONE = 2;
+    // 写入一块数据到AudioSink，参数为数据字节数和写入结果
+    public final static int EVENT_PLAY_BUFFER = 3;
+    // 录音读取一块数据，参数为请求的字节数和读取结果
+    public final static int EVENT_RECORD_BUFFER = 4;
+    // 识别出一个音，参数为音的序号
+    public final static int EVENT_RECOGNIZE_SYMBOL = 5;
+    // 编码开始、结束，参数为默认时长和静音时长(ms)
+    public final static int EVENT_ENCODE_START = 6;
+    public final static int EVENT_ENCODE_END = 7;
+
+    private final static String[] EVENT_NAMES = { "unknown", "encode_symbol", "gen_tone", "play_buffer", "record_buffer", "recognize_symbol",
+            "encode_start", "encode_end" };
+    private final static int[] EVENT_LEVELS = { LogHelper.LEVEL_NONE, LogHelper.LEVEL_DEBUG, LogHelper.LEVEL_DEBUG, LogHelper.LEVEL_VERBOSE,
+            LogHelper.LEVEL_VERBOSE, LogHelper.LEVEL_DEBUG, LogHelper.LEVEL_INFO, LogHelper.LEVEL_INFO };
+
+    private static final class Ring {
+        private final long mTimes[];
+        private final int mEvents[];
+        private final int mArgs1[];
+        private final int mArgs2[];
+        private final int mMask;
+        private final AtomicLong mNext = new AtomicLong();
+
+        public Ring(int capacity) {
+            mTimes = new long[capacity];
+            mEvents = new int[capacity];
+            mArgs1 = new int[capacity];
+            mArgs2 = new int[capacity];
+            mMask = capacity - 1;
+        }
+    }
+
+    private static volatile Ring sRing;
+    private static volatile int sLevel = LogHelper.LEVEL_VERBOSE;
+
+    private Tracer() {
+    }
+
+    /**
+     * 开始记录，已在记录时清空
+     * @param capacity 最多保留的事件个数，向上取为2的幂
+     */
+    public static synchronized void enable(int capacity) {
+        int size = 1;
+        while (size < capacity) {
+            size <<= 1;
+        }
+        sRing = new Ring(size);
+    }
+
+    public static synchronized void disable() {
+        sRing = null;
+    }
+
+    public static boolean isEnabled() {
+        return null != sRing;
+    }
+
+    /**
+     * 设置记录事件的最低级别，如设为LogHelper.LEVEL_DEBUG时不记录每块数据的播放、录音事件；默认全部记录
+     * @param level LogHelper.LEVEL_*
+     */
+    public static void setLevel(int level) {
+        sLevel = level;
+    }
+
+    public static int getEventLevel(int event) {
+        if (event > 0 && event < EVENT_LEVELS.length) {
+            return EVENT_LEVELS[event];
+        }
+        return EVENT_LEVELS[0];
+    }
+
+    /**
+     * 记录一个事件，事件级别低于设置的级别或关闭时直接返回
+     * @param event EVENT_*
+     */
+    public static void trace(int event, int arg1, int arg2) {
+        if (getEventLevel(event) < sLevel) {
+            return;
+        }
+        Ring ring = sRing;
+        if (null == ring) {
+            return;
+        }
+        int i = (int) (ring.mNext.getAndIncrement() & ring.mMask);
+        ring.mTimes[i] = System.nanoTime();
+        ring.mEvents[i] = event;
+        ring.mArgs1[i] = arg1;
+        ring.mArgs2[i] = arg2;
+    }
+
+    public static String getEventName(int event) {
+        if (event > 0 && event < EVENT_NAMES.length) {
+            return EVENT_NAMES[event];
+        }
+        return EVENT_NAMES[0];
+    }
+
+    /**
+     * 按二进制格式导出保留的事件，从早到晚排列；导出时仍在写入的事件可能不完整
+     * @return 是否成功
+     */
+    public static boolean dump(File file) {
+        Ring ring = sRing;
+        if (null == ring) {
+            return false;
+        }
+
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+            long end = ring.mNext.get();
+            long begin = Math.max(0, end - ring.mTimes.length);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt((int) (end - begin));
+            for (long seq = begin; seq < end; ++seq) {
+                int i = (int) (seq & ring.mMask);
+                out.writeLong(ring.mTimes[i]);
+                out.writeInt(ring.mEvents[i]);
+                out.writeInt(ring.mArgs1[i]);
+                out.writeInt(ring.mArgs2[i]);
+            }
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            LogHelper.e(TAG, "dump error");
+            return false;
+        } finally {
+            if (null != out) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /**
+     * 按文本导出，每行为相对第一个事件的时间(us)、事件名和两个参数
+     */
+    public static void dump(PrintStream out) {
+        Ring ring = sRing;
+        if (null == ring) {
+            return;
+        }
+
+        long end = ring.mNext.get();
+        long begin = Math.max(0, end - ring.mTimes.length);
+        long base = ring.mTimes[(int) (begin & ring.mMask)];
+        for (long seq = begin; seq < end; ++seq) {
+            int i = (int) (seq & ring.mMask);
+            out.println(((ring.mTimes[i] - base) / 1000) + " " + getEventName(ring.mEvents[i]) + " " + ring.mArgs1[i] + " " + ring.mArgs2[i]);
+        }
+    }
+}
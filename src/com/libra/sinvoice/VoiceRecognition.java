@@ -16,43 +16,40 @@
  */
 package com.libra.sinvoice;
 
+import java.nio.ByteBuffer;
+import java.nio.ShortBuffer;
+
 import com.libra.sinvoice.Buffer.BufferData;
 /**
- * 根据声音信息，获取在码本中对应的位置
+ * 根据声音信息，获取在码本中对应的位置<br>
+ * 从队列中取录音数据交给{@link Decoder}解码
  */
-public class VoiceRecognition {
+public class VoiceRecognition implements Decoder.Listener {
     private final static String TAG = "Recognition";
 
+    // 过零点计数
+    public final static int DECODER_ZERO_CROSSING = 1;
+    // Goertzel滤波器组
+    public final static int DECODER_GOERTZEL = 2;
+    // FFT频谱
+    public final static int DECODER_FFT = 3;
+
     private final static int STATE_START = 1;
     private final static int STATE_STOP = 2;
-    private final static int STEP1 = 1;
-    private final static int STEP2 = 2;
-    private final static int INDEX[] = { -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, 6, -1, -1, -1, -1, 5, -1, -1, -1, 4, -1, -1, 3, -1, -1, 2, -1, -1, 1, -1, -1,
-            0 };
-    private final static int MAX_SAMPLING_POINT_COUNT = 31;
-    private final static int MIN_REG_CIRCLE_COUNT = 10;
 
     private int mState;
     private Listener mListener;
+    private ConfidenceListener mConfidenceListener;
     private Callback mCallback;
-
-    private int mSamplingPointCount = 0;
+    private Decoder mDecoder;
 
     private int mSampleRate;
     private int mChannel;
     private int mBits;
-
-    private boolean mIsStartCounting = false;
-    private int mStep;
-    private boolean mIsBeginning = false;
-    private boolean mStartingDet = false;
-    private int mStartingDetCount;
-
-    private int mRegValue;
-    private int mRegIndex;
-    private int mRegCount;
-    private int mPreRegCircle;
-    private boolean mIsRegStart = false;
+    // 不是按采样点存储的数据(如映射的WAV文件、8位数据)按段转换到这里再交给解码器，
+    // 大小固定，不随映射段的大小增长
+    private final static int SLICE_SAMPLES = Common.DEFAULT_BUFFER_SIZE / 2;
+    private final short mSlice[] = new short[SLICE_SAMPLES];
 
     public static interface Listener {
         void onStartRecognition();
@@ -62,6 +59,13 @@ public class VoiceRecognition {
         void onStopRecognition();
     }
 
+    /**
+     * 识别出一个音时，附带该音的能量和置信度
+     */
+    public static interface ConfidenceListener {
+        void onRecognitionConfidence(int index, float energy, float confidence);
+    }
+
     public static interface Callback {
         BufferData getRecognitionBuffer();
 
@@ -69,18 +73,66 @@ public class VoiceRecognition {
     }
 
     public VoiceRecognition(Callback callback, int SampleRate, int channel, int bits) {
+        this(callback, SampleRate, channel, bits, DECODER_ZERO_CROSSING);
+    }
+
+    /**
+     * @param decoder {@link #DECODER_ZERO_CROSSING}、{@link #DECODER_GOERTZEL} 或 {@link #DECODER_FFT}
+     */
+    public VoiceRecognition(Callback callback, int SampleRate, int channel, int bits, int decoder) {
+        this(callback, SampleRate, channel, bits, createDecoder(decoder, SampleRate));
+    }
+
+    public VoiceRecognition(Callback callback, int SampleRate, int channel, int bits, Decoder decoder) {
         mState = STATE_STOP;
 
         mCallback = callback;
         mSampleRate = SampleRate;
         mChannel = channel;
         mBits = bits;
+
+        mDecoder = decoder;
+        mDecoder.setListener(this);
+    }
+
+    public static Decoder createDecoder(int decoder, int sampleRate) {
+        return createDecoder(decoder, sampleRate, Encoder.getCodeFrequencies(sampleRate));
+    }
+
+    /**
+     * 按频率规划创建解码器，采样率取自plan
+     */
+    public static Decoder createDecoder(int decoder, FrequencyPlan plan) {
+        return createDecoder(decoder, plan.getSampleRate(), plan.getFrequencies());
+    }
+
+    private static Decoder createDecoder(int decoder, int sampleRate, int[] frequencies) {
+        switch (decoder) {
+        case DECODER_GOERTZEL:
+            return new GoertzelDecoder(sampleRate, frequencies);
+
+        case DECODER_FFT:
+            return new FftDecoder(sampleRate, frequencies);
+
+        default:
+            ZeroCrossingDecoder zeroCrossing = new ZeroCrossingDecoder(sampleRate, frequencies);
+            if (zeroCrossing.isResolvable()) {
+                return zeroCrossing;
+            }
+            // 采样率低时相邻音的周期相差不到MIN_PERIOD_GAP个采样点，过零点计数分不开
+            LogHelper.e(TAG, "zero crossing can not separate tones at sampleRate:" + sampleRate + ", use goertzel");
+            return new GoertzelDecoder(sampleRate, frequencies);
+        }
     }
 
     public void setListener(Listener listener) {
         mListener = listener;
     }
 
+    public void setConfidenceListener(ConfidenceListener listener) {
+        mConfidenceListener = listener;
+    }
+
     /**
      * 
      */
@@ -89,14 +141,7 @@ public class VoiceRecognition {
 
             if (null != mCallback) {
                 mState = STATE_START;
-                mSamplingPointCount = 0;
-
-                mIsStartCounting = false;
-                mStep = STEP1;
-                mIsBeginning = false;
-                mStartingDet = false;
-                mStartingDetCount = 0;
-                mPreRegCircle = -1;
+                mDecoder.reset();
                 if (null != mListener) {
                     mListener.onStartRecognition();
                 }
@@ -104,7 +149,7 @@ public class VoiceRecognition {
                 	// 从队列中取出
                     BufferData data = mCallback.getRecognitionBuffer();
                     if (null != data) {
-                        if (null != data.mData) {
+                        if (!data.isEndOfInput()) {
                         	// 解析数据
                             process(data);
 
@@ -127,159 +172,63 @@ public class VoiceRecognition {
         }
     }
 
-    public void stop() {
-        if (STATE_START == mState) {
-            mState = STATE_STOP;
+    private void process(BufferData data) {
+        if (Record.BITS_8 == mBits) {
+            process8Bit(data);
+            return;
+        }
+
+        int count = data.getFilledSize() / 2;
+        if (null != data.mSamples) {
+            mDecoder.process(data.mSamples, count);
+            return;
+        }
+
+        ShortBuffer view = data.getShortBuffer();
+        view.position(0);
+        for (int offset = 0; offset < count; offset += SLICE_SAMPLES) {
+            int n = Math.min(SLICE_SAMPLES, count - offset);
+            view.get(mSlice, 0, n);
+            mDecoder.process(mSlice, n);
         }
+        view.position(0);
     }
 
-    private void process(BufferData data) {
-        int size = data.getFilledSize() - 1;
-        short sh = 0;
-        for (int i = 0; i < size; i++) {
-            short sh1 = data.mData[i];
-            sh1 &= 0xff;
-            short sh2 = data.mData[++i];
-            sh2 <<= 8;
-            sh = (short) ((sh1) | (sh2));
-
-            if (!mIsStartCounting) {
-                if (STEP1 == mStep) {
-                    if (sh < 0) {
-                        mStep = STEP2;
-                    }
-                } else if (STEP2 == mStep) {
-                    if (sh > 0) {
-                        mIsStartCounting = true;
-                        mSamplingPointCount = 0;
-                        mStep = STEP1;
-                    }
+    /**
+     * 8位无符号数据先转为16位有符号采样点，解码器只处理16位
+     */
+    private void process8Bit(BufferData data) {
+        int count = data.getFilledSize();
+        byte bytes[] = data.mData;
+        ByteBuffer buffer = data.getByteBuffer();
+        for (int offset = 0; offset < count; offset += SLICE_SAMPLES) {
+            int n = Math.min(SLICE_SAMPLES, count - offset);
+            if (null != bytes) {
+                for (int i = 0; i < n; ++i) {
+                    mSlice[i] = (short) (((bytes[offset + i] & 0xff) - 128) << 8);
                 }
             } else {
-                ++mSamplingPointCount;
-                if (STEP1 == mStep) {
-                    if (sh < 0) {
-                        mStep = STEP2;
-                    }
-                } else if (STEP2 == mStep) {
-                    if (sh > 0) {
-                        // preprocess the circle
-                        int samplingPointCount = preReg(mSamplingPointCount);
-
-                        // recognise voice
-                        reg(samplingPointCount);
-
-                        mSamplingPointCount = 0;
-                        mStep = STEP1;
-                    }
+                for (int i = 0; i < n; ++i) {
+                    mSlice[i] = (short) (((buffer.get(offset + i) & 0xff) - 128) << 8);
                 }
             }
+            mDecoder.process(mSlice, n);
         }
     }
 
-    private int preReg(int samplingPointCount) {
-        switch (samplingPointCount) {
-        case 8:
-        case 9:
-        case 10:
-        case 11:
-        case 12:
-            samplingPointCount = 10;
-            break;
-
-        case 13:
-        case 14:
-        case 15:
-        case 16:
-        case 17:
-            samplingPointCount = 15;
-            break;
-
-        case 18:
-        case 19:
-        case 20:
-            samplingPointCount = 19;
-            break;
-
-        case 21:
-        case 22:
-        case 23:
-            samplingPointCount = 22;
-            break;
-
-        case 24:
-        case 25:
-        case 26:
-            samplingPointCount = 25;
-            break;
-
-        case 27:
-        case 28:
-        case 29:
-            samplingPointCount = 28;
-            break;
-
-        case 30:
-        case 31:
-        case 32:
-            samplingPointCount = 31;
-            break;
-
-        default:
-            samplingPointCount = 0;
-            break;
+    public void stop() {
+        if (STATE_START == mState) {
+            mState = STATE_STOP;
         }
-
-        return samplingPointCount;
     }
 
-    private void reg(int samplingPointCount) {
-        if (!mIsBeginning) {
-            if (!mStartingDet) {
-                if (MAX_SAMPLING_POINT_COUNT == samplingPointCount) {
-                    mStartingDet = true;
-                    mStartingDetCount = 0;
-                }
-            } else {
-                if (MAX_SAMPLING_POINT_COUNT == samplingPointCount) {
-                    ++mStartingDetCount;
-
-                    if (mStartingDetCount >= MIN_REG_CIRCLE_COUNT) {
-                        mIsBeginning = true;
-                        mIsRegStart = false;
-                        mRegCount = 0;
-                    }
-                } else {
-                    mStartingDet = false;
-                }
-            }
-        } else {
-            if (!mIsRegStart) {
-                if (samplingPointCount > 0) {
-                    mRegValue = samplingPointCount;
-                    mRegIndex = INDEX[samplingPointCount];
-                    mIsRegStart = true;
-                    mRegCount = 1;
-                }
-            } else {
-                if (samplingPointCount == mRegValue) {
-                    ++mRegCount;
-
-                    if (mRegCount >= MIN_REG_CIRCLE_COUNT) {
-                        // ok
-                        if (mRegValue != mPreRegCircle) {
-                            if (null != mListener) {
-                                mListener.onRecognition(mRegIndex);
-                            }
-                            mPreRegCircle = mRegValue;
-                        }
-
-                        mIsRegStart = false;
-                    }
-                } else {
-                    mIsRegStart = false;
-                }
-            }
+    @Override
+    public void onDecode(int index, float energy, float confidence) {
+        if (null != mListener) {
+            mListener.onRecognition(index);
+        }
+        if (null != mConfidenceListener) {
+            mConfidenceListener.onRecognitionConfidence(index, energy, confidence);
         }
     }
 }
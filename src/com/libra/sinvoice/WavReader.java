@@ -0,0 +1,210 @@
+/*
+ * Copyright (C) 2013 gujicheng
+ * 
+ * Licensed under the GPL License Version 2.0;
+ * you may not use this file except in compliance with the License.
+ * 
+ * If you have any question, please contact me.
+ * 
+ *************************************************************************
+ **                   Author information                                **
+ *************************************************************************
+ ** Email: gujicheng197@126.com                                         **
+ ** QQ   : 29600731                                                     **
+ ** Weibo: http://weibo.com/gujicheng197                                **
+ *************************************************************************
+ */
+package com.libra.sinvoice;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import com.libra.sinvoice.Buffer.BufferData;
+
+/**
+ * 以内存映射方式读取WAV或原始PCM文件<br>
+ * 数据区按MAX_CHUNK_SIZE分段映射，每段包装成一个BufferData交给VoiceRecognition，
+ * 整段不拷贝到Java堆，识别时每次只转换固定大小的一小段采样点。
+ * 只支持单声道8位、16位线性PCM（格式1，或子格式为PCM的WAVE_FORMAT_EXTENSIBLE）；没有RIFF头的文件按原始PCM处理，采样率、位深由调用者指定。
+ */
+public class WavReader {
+    private final static String TAG = "WavReader";
+    private final static int MAX_CHUNK_SIZE = 64 * 1024 * 1024;
+
+    private final static int FORMAT_PCM = 0x0001;
+    private final static int FORMAT_EXTENSIBLE = 0xFFFE;
+    // WAVE_FORMAT_EXTENSIBLE的PCM子格式GUID，在fmt块中偏移24
+    private final static byte[] SUBFORMAT_PCM = {
+            0x01, 0x00, 0x00, 0x00, 0x00, 0x00, 0x10, 0x00,
+            (byte) 0x80, 0x00, 0x00, (byte) 0xAA, 0x00, 0x38, (byte) 0x9B, 0x71 };
+
+    private RandomAccessFile mFile;
+    private FileChannel mChannel;
+    private long mDataOffset;
+    private long mDataSize;
+    private long mPosition;
+
+    private int mSampleRate;
+    private int mChannels;
+    private int mBits;
+    private boolean mPcm;
+
+    /**
+     * @param file WAV或原始PCM文件
+     * @param rawSampleRate 没有RIFF头时使用的采样率
+     */
+    public WavReader(File file, int rawSampleRate) {
+        this(file, rawSampleRate, 16);
+    }
+
+    /**
+     * @param rawBits 没有RIFF头时使用的位深，8或16
+     */
+    public WavReader(File file, int rawSampleRate, int rawBits) {
+        mSampleRate = rawSampleRate;
+        mChannels = 1;
+        mBits = rawBits;
+        mPcm = true;
+        try {
+            mFile = new RandomAccessFile(file, "r");
+            mChannel = mFile.getChannel();
+            mDataOffset = 0;
+            mDataSize = mChannel.size();
+            parseHeader();
+        } catch (IOException e) {
+            e.printStackTrace();
+            LogHelper.e(TAG, "open file error");
+            close();
+        }
+        mPosition = 0;
+    }
+
+    /**
+     * @return 文件打开成功且格式可以解码
+     */
+    public boolean isValid() {
+        return null != mChannel && mPcm && 1 == mChannels && (8 == mBits || 16 == mBits);
+    }
+
+    public int getSampleRate() {
+        return mSampleRate;
+    }
+
+    public int getChannels() {
+        return mChannels;
+    }
+
+    public int getBits() {
+        return mBits;
+    }
+
+    /**
+     * 映射下一段数据
+     * @return 读完或出错时返回结束标志{@link BufferData#getEmptyBuffer()}
+     */
+    public BufferData next() {
+        if (null == mChannel || mPosition >= mDataSize) {
+            return BufferData.getEmptyBuffer();
+        }
+
+        int size = (int) Math.min(MAX_CHUNK_SIZE, mDataSize - mPosition);
+        size &= ~1;
+        if (size <= 0) {
+            mPosition = mDataSize;
+            return BufferData.getEmptyBuffer();
+        }
+        try {
+            MappedByteBuffer buffer = mChannel.map(FileChannel.MapMode.READ_ONLY, mDataOffset + mPosition, size);
+            mPosition += size;
+            return new BufferData(buffer.order(ByteOrder.LITTLE_ENDIAN), size);
+        } catch (IOException e) {
+            e.printStackTrace();
+            LogHelper.e(TAG, "map file error");
+            mPosition = mDataSize;
+            return BufferData.getEmptyBuffer();
+        }
+    }
+
+    public void close() {
+        if (null != mFile) {
+            try {
+                mFile.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            mFile = null;
+            mChannel = null;
+        }
+    }
+
+    // 找到fmt和data块，没有RIFF头时整个文件都是数据
+    private void parseHeader() throws IOException {
+        if (mDataSize < 12) {
+            return;
+        }
+        ByteBuffer riff = read(0, 12);
+        if ('R' != riff.get(0) || 'I' != riff.get(1) || 'F' != riff.get(2) || 'F' != riff.get(3)
+                || 'W' != riff.get(8) || 'A' != riff.get(9) || 'V' != riff.get(10) || 'E' != riff.get(11)) {
+            return;
+        }
+
+        long fileSize = mDataSize;
+        long pos = 12;
+        while (pos + 8 <= fileSize) {
+            ByteBuffer chunk = read(pos, 8);
+            int id0 = chunk.get(0), id1 = chunk.get(1), id2 = chunk.get(2), id3 = chunk.get(3);
+            long chunkSize = chunk.getInt(4) & 0xffffffffL;
+            pos += 8;
+
+            if ('f' == id0 && 'm' == id1 && 't' == id2 && ' ' == id3) {
+                ByteBuffer fmt = read(pos, 16);
+                mPcm = isPcm(fmt.getShort(0) & 0xffff, pos, chunkSize);
+                mChannels = fmt.getShort(2);
+                mSampleRate = fmt.getInt(4);
+                mBits = fmt.getShort(14);
+            } else if ('d' == id0 && 'a' == id1 && 't' == id2 && 'a' == id3) {
+                mDataOffset = pos;
+                mDataSize = Math.min(chunkSize, fileSize - pos);
+                return;
+            }
+            // 块长度为奇数时有一个填充字节
+            pos += chunkSize + (chunkSize & 1);
+        }
+        LogHelper.e(TAG, "no data chunk");
+        mDataSize = 0;
+    }
+
+    // 只接受线性PCM，μ律、A律等压缩格式按无效处理
+    private boolean isPcm(int format, long pos, long chunkSize) throws IOException {
+        if (FORMAT_PCM == format) {
+            return true;
+        }
+        if (FORMAT_EXTENSIBLE != format || chunkSize < 40) {
+            LogHelper.e(TAG, "unsupported format:" + format);
+            return false;
+        }
+        ByteBuffer guid = read(pos + 24, SUBFORMAT_PCM.length);
+        for (int i = 0; i < SUBFORMAT_PCM.length; ++i) {
+            if (SUBFORMAT_PCM[i] != guid.get(i)) {
+                LogHelper.e(TAG, "unsupported sub format");
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private ByteBuffer read(long position, int size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (mChannel.read(buffer, position + buffer.position()) < 0) {
+                break;
+            }
+        }
+        return buffer;
+    }
+}
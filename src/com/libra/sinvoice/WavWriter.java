@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2013 gujicheng
+ * 
+ * Licensed under the GPL License Version 2.0;
+ * you may not use this file except in compliance with the License.
+ * 
+ * If you have any question, please contact me.
+ * 
+ *************************************************************************
+ **                   Author information                                **
+ *************************************************************************
+ ** Email: gujicheng197@126.com                                         **
+ ** QQ   : 29600731                                                     **
+ ** Weibo: http://weibo.com/gujicheng197                                **
+ *************************************************************************
+ */
+package com.libra.sinvoice;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+import com.libra.sinvoice.Buffer.BufferData;
+
+/**
+ * 把PCM数据写入WAV文件或内存<br>
+ * 写文件时通过FileChannel直接写出，关闭时回填WAV头中的长度；写内存时可用{@link #toByteArray()}取出结果。
+ */
+public class WavWriter {
+    private final static String TAG = "WavWriter";
+    private final static int HEADER_SIZE = 44;
+    private final static int INITIAL_MEMORY_SIZE = 64 * 1024;
+
+    private FileChannel mChannel;
+    private long mStartPosition;
+    private byte mMemory[];
+    private boolean mWavHeader;
+
+    private int mSampleRate;
+    private int mChannels;
+    private int mBits;
+    private int mDataSize;
+
+    /**
+     * 写入文件
+     * @param channel 从当前位置开始写
+     * @param sampleRate 采样率
+     * @param bits 每个采样点的位数，8或16
+     * @param wavHeader 为false时只写原始PCM数据
+     */
+    public WavWriter(FileChannel channel, int sampleRate, int bits, boolean wavHeader) {
+        this(sampleRate, bits, wavHeader);
+        mChannel = channel;
+        try {
+            mStartPosition = channel.position();
+        } catch (IOException e) {
+            e.printStackTrace();
+            LogHelper.e(TAG, "get channel position error");
+        }
+    }
+
+    /**
+     * 写入内存
+     */
+    public WavWriter(int sampleRate, int bits, boolean wavHeader) {
+        mSampleRate = sampleRate;
+        mChannels = 1;
+        mBits = bits;
+        mWavHeader = wavHeader;
+        mDataSize = 0;
+    }
+
+    public boolean open() {
+        mDataSize = 0;
+        if (null == mChannel) {
+            mMemory = new byte[INITIAL_MEMORY_SIZE];
+        }
+        if (mWavHeader) {
+            return writeAt(0, header());
+        }
+        return true;
+    }
+
+    public boolean write(BufferData data) {
+        int size = data.getFilledSize();
+        ByteBuffer buffer = data.getByteBuffer();
+        buffer.clear();
+        buffer.limit(size);
+        boolean ret = writeAt(headerSize() + mDataSize, buffer);
+        buffer.clear();
+        if (ret) {
+            mDataSize += size;
+        }
+        return ret;
+    }
+
+    /**
+     * 回填WAV头中的长度
+     */
+    public boolean close() {
+        if (mWavHeader) {
+            return writeAt(0, header());
+        }
+        return true;
+    }
+
+    public int getDataSize() {
+        return mDataSize;
+    }
+
+    /**
+     * @return 写入内存的全部数据
+     */
+    public byte[] toByteArray() {
+        if (null == mMemory) {
+            return null;
+        }
+        byte ret[] = new byte[headerSize() + mDataSize];
+        System.arraycopy(mMemory, 0, ret, 0, ret.length);
+        return ret;
+    }
+
+    private int headerSize() {
+        return mWavHeader ? HEADER_SIZE : 0;
+    }
+
+    private boolean writeAt(int offset, ByteBuffer src) {
+        if (null != mChannel) {
+            try {
+                long position = mStartPosition + offset;
+                while (src.hasRemaining()) {
+                    position += mChannel.write(src, position);
+                }
+                return true;
+            } catch (IOException e) {
+                e.printStackTrace();
+                LogHelper.e(TAG, "write channel error");
+                return false;
+            }
+        }
+
+        int end = offset + src.remaining();
+        if (end > mMemory.length) {
+            byte memory[] = new byte[Math.max(end, mMemory.length * 2)];
+            System.arraycopy(mMemory, 0, memory, 0, mMemory.length);
+            mMemory = memory;
+        }
+        src.get(mMemory, offset, src.remaining());
+        return true;
+    }
+
+    private ByteBuffer header() {
+        int blockAlign = mChannels * mBits / 8;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.put(new byte[] { 'R', 'I', 'F', 'F' });
+        header.putInt(36 + mDataSize);
+        header.put(new byte[] { 'W', 'A', 'V', 'E', 'f', 'm', 't', ' ' });
+        header.putInt(16);
+        // PCM
+        header.putShort((short) 1);
+        header.putShort((short) mChannels);
+        header.putInt(mSampleRate);
+        header.putInt(mSampleRate * blockAlign);
+        header.putShort((short) blockAlign);
+        header.putShort((short) mBits);
+        header.put(new byte[] { 'd', 'a', 't', 'a' });
+        header.putInt(mDataSize);
+        header.flip();
+        return header;
+    }
+}
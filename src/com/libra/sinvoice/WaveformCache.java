@@ -0,0 +1,179 @@
+/*
+ * Copyright (C) 2013 gujicheng
+ * 
+ * Licensed under the GPL License Version 2.0;
+ * you may not use this file except in compliance with the License.
+ * 
+ * If you have any question, please contact me.
+ * 
+ *************************************************************************
+ **                   Author information                                **
+ *************************************************************************
+ ** Email: gujicheng197@126.com                                         **
+ ** QQ   : 29600731                                                     **
+ ** Weibo: http://weibo.com/gujicheng197                                **
+ *************************************************************************
+ */
+package com.libra.sinvoice;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 音波缓存<br>
+ * 每个(振荡器类型, 频率, 采样率, 位深, 时长)组合的PCM数据只生成一次，之后SinGenerator直接拷贝使用。<br>
+ * 缓存总字节数受mMaxBytes限制，超出时淘汰最久未使用的音波。
+ */
+public class WaveformCache {
+    private final static String TAG = "WaveformCache";
+
+    public final static int DEFAULT_MAX_BYTES = 256 * 1024;
+
+    private static WaveformCache sDefaultCache;
+
+    private LinkedHashMap<Key, byte[]> mBlocks;
+    private int mMaxBytes;
+    private int mUsedBytes;
+    private int mHitCount;
+    private int mMissCount;
+
+    private final static class Key {
+        private final Class<?> mOscillatorClass;
+        private final int mGenRate;
+        private final int mSampleRate;
+        private final int mBits;
+        private final int mDuration;
+
+        public Key(Class<?> oscillatorClass, int genRate, int sampleRate, int bits, int duration) {
+            mOscillatorClass = oscillatorClass;
+            mGenRate = genRate;
+            mSampleRate = sampleRate;
+            mBits = bits;
+            mDuration = duration;
+        }
+
+        @Override
+        public int hashCode() {
+            int h = mOscillatorClass.hashCode();
+            h = 31 * h + mGenRate;
+            h = 31 * h + mSampleRate;
+            h = 31 * h + mBits;
+            h = 31 * h + mDuration;
+            return h;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key k = (Key) o;
+            return mOscillatorClass == k.mOscillatorClass && mGenRate == k.mGenRate && mSampleRate == k.mSampleRate && mBits == k.mBits && mDuration == k.mDuration;
+        }
+    }
+
+    /**
+     * 所有SinGenerator默认共用的缓存
+     */
+    public static synchronized WaveformCache getDefault() {
+        if (null == sDefaultCache) {
+            sDefaultCache = new WaveformCache(DEFAULT_MAX_BYTES);
+        }
+        return sDefaultCache;
+    }
+
+    /**
+     * @param maxBytes 缓存占用的最大字节数
+     */
+    public WaveformCache(int maxBytes) {
+        mMaxBytes = maxBytes;
+        mUsedBytes = 0;
+        // accessOrder为true，迭代顺序即最久未使用在前
+        mBlocks = new LinkedHashMap<Key, byte[]>(16, 0.75f, true);
+    }
+
+    /**
+     * 获取一段音波的PCM数据，没有时生成并缓存<br>
+     * 返回的数组被缓存共享，调用者不能修改
+     * @param oscillator 缓存未命中时用来生成音波的振荡器
+     * @param genRate 音波频率，0为静音
+     * @param sampleRate 采样率
+     * @param bits SinGenerator.BITS_8 或 SinGenerator.BITS_16
+     * @param duration 时长(ms)
+     * @return
+     */
+    public synchronized byte[] getBlock(Oscillator oscillator, int genRate, int sampleRate, int bits, int duration) {
+        Key key = new Key(oscillator.getClass(), genRate, sampleRate, bits, duration);
+        byte[] block = mBlocks.get(key);
+        if (null != block) {
+            ++mHitCount;
+            return block;
+        }
+
+        ++mMissCount;
+        block = render(oscillator, genRate, sampleRate, bits, duration);
+        if (block.length <= mMaxBytes) {
+            mBlocks.put(key, block);
+            mUsedBytes += block.length;
+            trim();
+        } else {
+            LogHelper.d(TAG, "block too large to cache:" + block.length);
+        }
+        return block;
+    }
+
+    public synchronized void setMaxBytes(int maxBytes) {
+        mMaxBytes = maxBytes;
+        trim();
+    }
+
+    public synchronized void clear() {
+        mBlocks.clear();
+        mUsedBytes = 0;
+    }
+
+    public synchronized int getUsedBytes() {
+        return mUsedBytes;
+    }
+
+    public synchronized int getHitCount() {
+        return mHitCount;
+    }
+
+    public synchronized int getMissCount() {
+        return mMissCount;
+    }
+
+    private void trim() {
+        Iterator<Map.Entry<Key, byte[]>> it = mBlocks.entrySet().iterator();
+        while (mUsedBytes > mMaxBytes && it.hasNext()) {
+            mUsedBytes -= it.next().getValue().length;
+            it.remove();
+        }
+    }
+
+    /**
+     * 与SinGenerator逐点生成的数据完全一致
+     */
+    private static byte[] render(Oscillator oscillator, int genRate, int sampleRate, int bits, int duration) {
+        int n = bits / 2;
+        int totalCount = (duration * sampleRate) / 1000;
+        int frameSize = SinGenerator.getBytesPerSample(bits);
+        oscillator.reset(genRate, sampleRate);
+
+        byte[] block = new byte[totalCount * frameSize];
+        int filled = 0;
+        for (int i = 0; i < totalCount; ++i) {
+            int out = oscillator.next(n) + 128;
+            block[filled++] = (byte) (out & 0xff);
+            if (SinGenerator.BITS_16 == bits) {
+                block[filled++] = (byte) ((out >> 8) & 0xff);
+            }
+        }
+        return block;
+    }
+}
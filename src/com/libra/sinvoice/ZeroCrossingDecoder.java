@@ -0,0 +1,255 @@
+/*
+ * Copyright (C) 2013 gujicheng
+ * 
+ * Licensed under the GPL License Version 2.0;
+ * you may not use this file except in compliance with the License.
+ * 
+ * If you have any question, please contact me.
+ * 
+ *************************************************************************
+ **                   Author information                                **
+ *************************************************************************
+ ** Email: gujicheng197@126.com                                         **
+ ** QQ   : 29600731                                                     **
+ ** Weibo: http://weibo.com/gujicheng197                                **
+ *************************************************************************
+ */
+package com.libra.sinvoice;
+
+/**
+ * 过零点计数解码<br>
+ * 数相邻两次由负变正之间的采样点个数得到音波周期，再查表得到音在频率表中的位置。
+ * 表由采样率和各音频率生成：每个周期长度归到最接近的音，超出最长、最短周期半个间隔以外的丢弃。
+ * 连续MIN_REG_CIRCLE_COUNT个周期相同才确认，能量固定回调0，置信度固定回调1。
+ */
+public class ZeroCrossingDecoder implements Decoder {
+    private final static int STEP1 = 1;
+    private final static int STEP2 = 2;
+    private final static int MIN_REG_CIRCLE_COUNT = 10;
+    // 音的边界处被破坏的周期数
+    private final static int BOUNDARY_CIRCLE_COUNT = 2;
+
+    // 相邻音的周期至少相差的采样点数，每个周期的计数有±1的误差，只差1个多采样点时(如16kHz的1.1个)仍会识别成相邻的音
+    public final static float MIN_PERIOD_GAP = 1.4f;
+
+    // 下标为一个周期的采样点个数，值为音的位置，-1为不是任何音
+    private int mIndex[];
+    private boolean mResolvable;
+
+    private Listener mListener;
+
+    private int mSamplingPointCount = 0;
+
+    private boolean mIsStartCounting = false;
+    private int mStep;
+    private boolean mIsBeginning = false;
+    private boolean mStartingDet = false;
+    private int mStartingDetCount;
+
+    private int mRegIndex;
+    private int mRegCount;
+    private int mPreRegIndex;
+    private boolean mIsRegStart = false;
+
+    public ZeroCrossingDecoder() {
+        this(Common.DEFAULT_SAMPLE_RATE, Encoder.getCodeFrequencies());
+    }
+
+    /**
+     * @param sampleRate 采样率
+     * @param frequencies 各音的频率，第一个为开始音，最后一个为结束音
+     */
+    public ZeroCrossingDecoder(int sampleRate, int[] frequencies) {
+        int count = frequencies.length;
+        float periods[] = new float[count];
+        float maxPeriod = 0;
+        float minPeriod = Float.MAX_VALUE;
+        for (int i = 0; i < count; ++i) {
+            periods[i] = (float) sampleRate / frequencies[i];
+            maxPeriod = Math.max(maxPeriod, periods[i]);
+            minPeriod = Math.min(minPeriod, periods[i]);
+        }
+
+        mResolvable = true;
+        for (int i = 0; i < count; ++i) {
+            for (int j = i + 1; j < count; ++j) {
+                if (Math.abs(periods[i] - periods[j]) < MIN_PERIOD_GAP) {
+                    mResolvable = false;
+                }
+            }
+        }
+
+        // 最长、最短周期向外各延伸与相邻音间隔的一半
+        float upper = maxPeriod;
+        float lower = minPeriod;
+        float nearestLonger = 0;
+        float nearestShorter = Float.MAX_VALUE;
+        for (int i = 0; i < count; ++i) {
+            if (periods[i] < maxPeriod) {
+                nearestLonger = Math.max(nearestLonger, periods[i]);
+            }
+            if (periods[i] > minPeriod) {
+                nearestShorter = Math.min(nearestShorter, periods[i]);
+            }
+        }
+        if (nearestLonger > 0) {
+            upper = maxPeriod + (maxPeriod - nearestLonger) / 2;
+        }
+        if (nearestShorter < Float.MAX_VALUE) {
+            lower = minPeriod - (nearestShorter - minPeriod) / 2;
+        }
+
+        mIndex = new int[(int) upper + 1];
+        for (int c = 0; c < mIndex.length; ++c) {
+            mIndex[c] = -1;
+            if (c < lower || c > upper) {
+                continue;
+            }
+            // 与两个音距离相同时归到周期短的音
+            float best = Float.MAX_VALUE;
+            for (int i = 0; i < count; ++i) {
+                float d = Math.abs(c - periods[i]);
+                if (d < best || (d == best && periods[i] < periods[mIndex[c]])) {
+                    best = d;
+                    mIndex[c] = i;
+                }
+            }
+        }
+
+        reset();
+    }
+
+    /**
+     * @return 按采样率和频率生成的周期表能否区分所有的音，不能时应使用{@link GoertzelDecoder}
+     */
+    public boolean isResolvable() {
+        return mResolvable;
+    }
+
+    @Override
+    public void setListener(Listener listener) {
+        mListener = listener;
+    }
+
+    @Override
+    public void reset() {
+        mSamplingPointCount = 0;
+
+        mIsStartCounting = false;
+        mStep = STEP1;
+        mIsBeginning = false;
+        mStartingDet = false;
+        mStartingDetCount = 0;
+        mPreRegIndex = -1;
+    }
+
+    /**
+     * 开始音先要连续MIN_REG_CIRCLE_COUNT + 1个周期进入识别状态，再连续MIN_REG_CIRCLE_COUNT个周期才确认
+     */
+    @Override
+    public float getMinSymbolDuration(int index, int frequency) {
+        int count = MIN_REG_CIRCLE_COUNT + BOUNDARY_CIRCLE_COUNT;
+        if (Common.START_TOKEN == index) {
+            count += MIN_REG_CIRCLE_COUNT + 1;
+        }
+        return count * 1000f / frequency;
+    }
+
+    @Override
+    public void process(short[] samples, int count) {
+        for (int i = 0; i < count; ++i) {
+            short sh = samples[i];
+
+            if (!mIsStartCounting) {
+                if (STEP1 == mStep) {
+                    if (sh < 0) {
+                        mStep = STEP2;
+                    }
+                } else if (STEP2 == mStep) {
+                    if (sh > 0) {
+                        mIsStartCounting = true;
+                        mSamplingPointCount = 0;
+                        mStep = STEP1;
+                    }
+                }
+            } else {
+                ++mSamplingPointCount;
+                if (STEP1 == mStep) {
+                    if (sh < 0) {
+                        mStep = STEP2;
+                    }
+                } else if (STEP2 == mStep) {
+                    if (sh > 0) {
+                        // preprocess the circle
+                        int index = preReg(mSamplingPointCount);
+
+                        // recognise voice
+                        reg(index);
+
+                        mSamplingPointCount = 0;
+                        mStep = STEP1;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return 周期对应的音的位置，-1为不是任何音
+     */
+    private int preReg(int samplingPointCount) {
+        if (samplingPointCount < mIndex.length) {
+            return mIndex[samplingPointCount];
+        }
+        return -1;
+    }
+
+    private void reg(int index) {
+        if (!mIsBeginning) {
+            if (!mStartingDet) {
+                if (Common.START_TOKEN == index) {
+                    mStartingDet = true;
+                    mStartingDetCount = 0;
+                }
+            } else {
+                if (Common.START_TOKEN == index) {
+                    ++mStartingDetCount;
+
+                    if (mStartingDetCount >= MIN_REG_CIRCLE_COUNT) {
+                        mIsBeginning = true;
+                        mIsRegStart = false;
+                        mRegCount = 0;
+                    }
+                } else {
+                    mStartingDet = false;
+                }
+            }
+        } else {
+            if (!mIsRegStart) {
+                if (index >= 0) {
+                    mRegIndex = index;
+                    mIsRegStart = true;
+                    mRegCount = 1;
+                }
+            } else {
+                if (index == mRegIndex) {
+                    ++mRegCount;
+
+                    if (mRegCount >= MIN_REG_CIRCLE_COUNT) {
+                        // ok
+                        if (mRegIndex != mPreRegIndex) {
+                            if (null != mListener) {
+                                mListener.onDecode(mRegIndex, 0, 1);
+                            }
+                            mPreRegIndex = mRegIndex;
+                        }
+
+                        mIsRegStart = false;
+                    }
+                } else {
+                    mIsRegStart = false;
+                }
+            }
+        }
+    }
+}